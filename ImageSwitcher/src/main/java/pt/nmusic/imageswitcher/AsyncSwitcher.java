@@ -0,0 +1,34 @@
+package pt.nmusic.imageswitcher;
+
+/**
+ * A {@link Switcher} that does part of its work in the background, so the frame after each switch
+ * is not held up by it.
+ * <p>
+ * At the end of a switch animation, {@link #nextAction(boolean)} or
+ * {@link #previousAction(boolean)} is still called on the UI thread and should only do the quick
+ * bookkeeping. Right after it, {@link #nextActionInBackground(boolean)} or
+ * {@link #previousActionInBackground(boolean)} is run on the Executor of the
+ * {@link SwitchListener} (see {@link SwitchListener#setSwitchExecutor}), for example to start
+ * an audio track or call an API. The background actions are run in the order of the switches
+ * with the default (serial) Executor.
+ */
+public interface AsyncSwitcher extends Switcher
+{
+    /**
+     * Performs the background work of going to the next item. This is NOT called on the UI
+     * thread, so it must not touch any Views.
+     *
+     * @param userInitiated A boolean indicating whether the switch was performed because of a
+     *                      user performed action or by the system in some other way.
+     */
+    void nextActionInBackground( boolean userInitiated );
+
+    /**
+     * Performs the background work of going to the previous item. This is NOT called on the UI
+     * thread, so it must not touch any Views.
+     *
+     * @param userInitiated A boolean indicating whether the switch was performed because of a
+     *                      user performed action or by the system in some other way.
+     */
+    void previousActionInBackground( boolean userInitiated );
+}
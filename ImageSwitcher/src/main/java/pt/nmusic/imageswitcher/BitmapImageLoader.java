@@ -0,0 +1,715 @@
+package pt.nmusic.imageswitcher;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A lightweight {@link ImageLoader} for local images (content, file and android.resource Uris)
+ * shown in plain ImageViews, for apps that do not need Fresco.
+ * <p/>
+ * The images are decoded on a small pool of background threads, highest priority first, and kept
+ * in a memory cache. Bitmaps that drop out of the cache and are no longer shown go to a
+ * {@link BitmapPool}, and new images are decoded into them with inBitmap. Once the pool has warmed
+ * up, swiping through images of similar sizes does not allocate any new Bitmaps. A Bitmap that was
+ * shown is only pooled after the next frame has been drawn, as the RenderThread may still be
+ * drawing it until then.
+ * <p/>
+ * Identical requests are merged into a single decode, which takes the highest priority of its
+ * requests. There is no disk cache, so a prefetch that is not to memory completes right away, and
+ * thumbnails are not shown (the images are local and decode quickly).
+ * <p/>
+ * All the functions must be called on the UI thread.
+ */
+public class BitmapImageLoader implements ImageLoader
+{
+    private static final int DEFAULT_THREAD_COUNT = 2;
+
+    private final ContentResolver contentResolver;
+    private final Handler         uiHandler = new Handler(Looper.getMainLooper());
+
+    private final ThreadPoolExecutor executor;
+    private final BitmapPool         bitmapPool;
+    private final LruCache<String, Bitmap> memoryCache;
+
+    // The decodes queued or running, per cache key.
+    private final HashMap<String, DecodeTask> tasks    = new HashMap<String, DecodeTask>();
+    // The load of each ImageView.
+    private final HashMap<ImageView, Target>  targets  = new HashMap<ImageView, Target>();
+    // The number of ImageViews showing each Bitmap. Shown Bitmaps are never pooled.
+    private final HashMap<Bitmap, Integer>    shown    = new HashMap<Bitmap, Integer>();
+
+    // The Bitmaps no longer shown or cached, pooled once the next frame has been drawn. The ones
+    // released before that frame started are moved to the drawn Bitmaps, and pooled after it.
+    private final ArrayList<Bitmap> releasedBitmaps = new ArrayList<Bitmap>();
+    private final ArrayList<Bitmap> drawnBitmaps    = new ArrayList<Bitmap>();
+    private boolean              poolScheduled = false;
+    // Null before Jelly Bean, the Bitmaps are then pooled from the next message.
+    private final FrameCoalescer frameWaiter;
+    // Pools the drawn Bitmaps, from the message after the frame.
+    private final Runnable poolDrawnBitmaps = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            poolScheduled = false;
+
+            for( int i = 0; i < drawnBitmaps.size(); i++ )
+            {
+                bitmapPool.put(drawnBitmaps.get(i));
+            }
+
+            drawnBitmaps.clear();
+        }
+    };
+
+    // The order the decodes were issued in, to decode requests of the same priority in order.
+    private long sequence = 0;
+
+    // The image shown while an image is decoded, or 0 for none.
+    private int loadingPlaceholder = 0;
+
+    /**
+     * Creates a BitmapImageLoader with a memory cache of an eighth of the maximum heap size, and a
+     * BitmapPool of a sixteenth.
+     */
+    public BitmapImageLoader( Context context )
+    {
+        this(context, (int) ( Runtime.getRuntime().maxMemory() / 8 ), (int) ( Runtime.getRuntime().maxMemory() / 16 ));
+    }
+
+    /**
+     * @param context        Any Context, only its application Context is kept.
+     * @param cacheBytes     The maximum bytes of the decoded images kept in the memory cache.
+     * @param poolBytes      The maximum bytes of the Bitmaps kept in the BitmapPool to decode into.
+     */
+    public BitmapImageLoader( Context context, int cacheBytes, int poolBytes )
+    {
+        if( context == null )
+        {
+            throw new IllegalArgumentException("Given Context was null! Error!");
+        }
+
+        this.contentResolver = context.getApplicationContext().getContentResolver();
+        this.bitmapPool = new BitmapPool(poolBytes);
+
+        this.memoryCache = new LruCache<String, Bitmap>(cacheBytes)
+        {
+            @Override
+            protected int sizeOf( String key, Bitmap bitmap )
+            {
+                // Measured as the BitmapPool does, so both budgets count the same bytes.
+                return BitmapPool.getAllocationSize(bitmap);
+            }
+
+            @Override
+            protected void entryRemoved( boolean evicted, String key, Bitmap oldValue, Bitmap newValue )
+            {
+                if( oldValue != newValue && !shown.containsKey(oldValue) )
+                {
+                    poolAfterNextFrame(oldValue);
+                }
+            }
+        };
+
+        if( Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN )
+        {
+            this.frameWaiter = new FrameCoalescer(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    onFrame();
+                }
+            });
+        }
+        else
+        {
+            this.frameWaiter = null;
+        }
+
+        this.executor = new ThreadPoolExecutor(DEFAULT_THREAD_COUNT, DEFAULT_THREAD_COUNT, 1, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( Runnable runnable )
+            {
+                return new Thread(runnable, "BitmapImageLoader");
+            }
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /*******************
+     * CONFIGURATION
+     *******************/
+
+    /**
+     * Sets the image shown in an ImageView while its image is decoded. By default nothing is shown.
+     *
+     * @param loadingPlaceholder The drawable resource, or 0 for none.
+     */
+    public void setLoadingPlaceholder( int loadingPlaceholder )
+    {
+        this.loadingPlaceholder = loadingPlaceholder;
+    }
+
+    /**
+     * Returns the bytes of the Bitmaps currently kept in the BitmapPool.
+     */
+    public int getPoolSize()
+    {
+        return bitmapPool.getSize();
+    }
+
+    /*******************
+     * LOADING
+     *******************/
+
+    @Override
+    public void load( ImageView view, Uri uri, Uri thumbnailUri, int width, int height, int priority, Callback callback )
+    {
+        release(view);
+
+        Target target = new Target(view, getKey(uri, width, height), callback);
+        targets.put(view, target);
+
+        callback.onSubmit();
+
+        Bitmap bitmap = memoryCache.get(target.key);
+
+        if( bitmap != null )
+        {
+            show(target, bitmap);
+            callback.onCompleted();
+            return;
+        }
+
+        if( loadingPlaceholder != 0 )
+        {
+            view.setImageResource(loadingPlaceholder);
+        }
+        else
+        {
+            view.setImageDrawable(null);
+        }
+
+        target.task = getTask(target.key, uri, width, height, priority);
+        target.task.targets.add(target);
+    }
+
+    @Override
+    public void release( ImageView view )
+    {
+        Target target = targets.remove(view);
+
+        if( target == null )
+        {
+            return;
+        }
+
+        if( target.task != null )
+        {
+            target.task.targets.remove(target);
+            cancelIfUnused(target.task);
+            target.task = null;
+        }
+
+        if( target.bitmap != null )
+        {
+            // The ImageView must stop drawing the Bitmap before it can be decoded into again.
+            view.setImageDrawable(null);
+            unshow(target.key, target.bitmap);
+            target.bitmap = null;
+        }
+
+        target.callback.onRelease();
+    }
+
+    @Override
+    public Request prefetch( Uri uri, int width, int height, int priority, boolean toMemory, Callback callback )
+    {
+        final PrefetchRequest request = new PrefetchRequest(callback);
+        String key = getKey(uri, width, height);
+
+        // Without a disk cache there is nothing to do for a prefetch that is not to memory.
+        if( !toMemory || memoryCache.get(key) != null )
+        {
+            request.skipped = true;
+            uiHandler.post(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    request.finish(false);
+                }
+            });
+
+            return request;
+        }
+
+        request.task = getTask(key, uri, width, height, priority);
+        request.task.prefetches.add(request);
+
+        return request;
+    }
+
+    @Override
+    public void clearMemoryCaches()
+    {
+        memoryCache.evictAll();
+        bitmapPool.clear();
+
+        // Not pooled at all, just left to the garbage collector.
+        releasedBitmaps.clear();
+        drawnBitmaps.clear();
+    }
+
+    /**
+     * Returns the running (or queued) decode of the given key, raising its priority if needed,
+     * or queues a new one.
+     */
+    private DecodeTask getTask( String key, Uri uri, int width, int height, int priority )
+    {
+        DecodeTask task = tasks.get(key);
+
+        if( task == null )
+        {
+            task = new DecodeTask(key, uri, width, height, priority, sequence++);
+            tasks.put(key, task);
+            executor.execute(task);
+        }
+        else if( priority > task.priority && executor.remove(task) )
+        {
+            // Re-queued, as the queue only orders the tasks when they are added. A task that has
+            // already started keeps running.
+            task.priority = priority;
+            executor.execute(task);
+        }
+
+        return task;
+    }
+
+    /**
+     * Cancels the given decode if no ImageView and no prefetch needs it anymore.
+     */
+    private void cancelIfUnused( DecodeTask task )
+    {
+        if( task.targets.isEmpty() && task.prefetches.isEmpty() )
+        {
+            task.cancelled = true;
+            tasks.remove(task.key);
+            executor.remove(task);
+        }
+    }
+
+    /**
+     * Called on the UI thread when a decode has finished.
+     *
+     * @param bitmap The decoded Bitmap, or null if the image could not be decoded.
+     */
+    private void onDecoded( DecodeTask task, Bitmap bitmap )
+    {
+        if( task.cancelled )
+        {
+            bitmapPool.put(bitmap);
+            return;
+        }
+
+        tasks.remove(task.key);
+
+        // Shown before it is cached, so the cache can not pool it if it does not fit.
+        for( int i = 0; i < task.targets.size(); i++ )
+        {
+            Target target = task.targets.get(i);
+            target.task = null;
+
+            if( bitmap != null )
+            {
+                show(target, bitmap);
+                target.callback.onCompleted();
+            }
+            else
+            {
+                target.callback.onFailed();
+            }
+        }
+
+        if( bitmap != null )
+        {
+            memoryCache.put(task.key, bitmap);
+        }
+
+        for( int i = 0; i < task.prefetches.size(); i++ )
+        {
+            PrefetchRequest request = task.prefetches.get(i);
+            request.task = null;
+            request.finish(bitmap == null);
+        }
+    }
+
+    private void show( Target target, Bitmap bitmap )
+    {
+        Integer count = shown.get(bitmap);
+        shown.put(bitmap, count == null ? 1 : count + 1);
+
+        target.bitmap = bitmap;
+        target.view.setImageBitmap(bitmap);
+    }
+
+    /**
+     * Called when an ImageView no longer shows the given Bitmap. Once no ImageView shows it, and
+     * it is no longer cached, it is pooled.
+     */
+    private void unshow( String key, Bitmap bitmap )
+    {
+        Integer count = shown.get(bitmap);
+
+        if( count != null && count > 1 )
+        {
+            shown.put(bitmap, count - 1);
+            return;
+        }
+
+        shown.remove(bitmap);
+
+        if( memoryCache.get(key) != bitmap )
+        {
+            poolAfterNextFrame(bitmap);
+        }
+    }
+
+    /**
+     * Pools the given Bitmap, which is no longer shown or cached, once the next frame has been
+     * drawn. Until then the RenderThread may still draw it, and must not see it decoded into.
+     */
+    private void poolAfterNextFrame( Bitmap bitmap )
+    {
+        if( frameWaiter != null )
+        {
+            releasedBitmaps.add(bitmap);
+            frameWaiter.schedule();
+        }
+        else
+        {
+            // Before Jelly Bean there is no RenderThread, the frames are drawn on the UI thread.
+            drawnBitmaps.add(bitmap);
+            schedulePooling();
+        }
+    }
+
+    /**
+     * Called at the start of the next frame. The Bitmaps released so far are no longer in it, so
+     * they are pooled once it has been drawn, from a message after it.
+     */
+    private void onFrame()
+    {
+        for( int i = 0; i < releasedBitmaps.size(); i++ )
+        {
+            drawnBitmaps.add(releasedBitmaps.get(i));
+        }
+
+        releasedBitmaps.clear();
+        schedulePooling();
+    }
+
+    private void schedulePooling()
+    {
+        if( !poolScheduled )
+        {
+            poolScheduled = true;
+            uiHandler.post(poolDrawnBitmaps);
+        }
+    }
+
+    private static String getKey( Uri uri, int width, int height )
+    {
+        return uri.toString() + '@' + width + 'x' + height;
+    }
+
+    /*******************
+     * DECODING
+     *******************/
+
+    /**
+     * Decodes the given image on a background thread, at the smallest power of two sample size
+     * that still covers the given size, and into a pooled Bitmap if there is one that fits.
+     *
+     * @return The Bitmap, or null if the image could not be decoded.
+     */
+    private Bitmap decode( DecodeTask task )
+    {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inTempStorage = TEMP_STORAGE.get();
+
+        try
+        {
+            options.inJustDecodeBounds = true;
+            decodeStream(task.uri, options);
+
+            if( options.outWidth <= 0 || options.outHeight <= 0 || task.cancelled )
+            {
+                return null;
+            }
+
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = getSampleSize(options.outWidth, options.outHeight, task.width, task.height);
+            options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+            options.inMutable = true;
+            options.inBitmap = bitmapPool.get(options.outWidth, options.outHeight, options.inSampleSize);
+
+            try
+            {
+                return decodeStream(task.uri, options);
+            }
+            catch( IllegalArgumentException e )
+            {
+                // The pooled Bitmap could not be decoded into after all, decode into a new one.
+                bitmapPool.put(options.inBitmap);
+                options.inBitmap = null;
+
+                return decodeStream(task.uri, options);
+            }
+        }
+        catch( IOException e )
+        {
+            return null;
+        }
+        catch( OutOfMemoryError e )
+        {
+            return null;
+        }
+    }
+
+    private Bitmap decodeStream( Uri uri, BitmapFactory.Options options ) throws IOException
+    {
+        InputStream stream = contentResolver.openInputStream(uri);
+
+        if( stream == null )
+        {
+            throw new IOException("Could not open " + uri);
+        }
+
+        try
+        {
+            return BitmapFactory.decodeStream(stream, null, options);
+        }
+        finally
+        {
+            stream.close();
+        }
+    }
+
+    /**
+     * Returns the largest power of two sample size that decodes the image to at least the given
+     * size, or 1 if the size is 0.
+     */
+    private static int getSampleSize( int imageWidth, int imageHeight, int width, int height )
+    {
+        int sampleSize = 1;
+
+        if( width <= 0 || height <= 0 )
+        {
+            return sampleSize;
+        }
+
+        while( imageWidth / ( sampleSize * 2 ) >= width && imageHeight / ( sampleSize * 2 ) >= height )
+        {
+            sampleSize *= 2;
+        }
+
+        return sampleSize;
+    }
+
+    // The buffer BitmapFactory decodes through, one per decoding thread.
+    private static final ThreadLocal<byte[]> TEMP_STORAGE = new ThreadLocal<byte[]>()
+    {
+        @Override
+        protected byte[] initialValue()
+        {
+            return new byte[16 * 1024];
+        }
+    };
+
+    /**
+     * The load of a single ImageView.
+     */
+    private static final class Target
+    {
+        private final ImageView view;
+        private final String    key;
+        private final Callback  callback;
+
+        // The decode the load waits for, or null.
+        private DecodeTask task;
+        // The Bitmap shown, or null.
+        private Bitmap     bitmap;
+
+        public Target( ImageView view, String key, Callback callback )
+        {
+            this.view = view;
+            this.key = key;
+            this.callback = callback;
+        }
+    }
+
+    /**
+     * A prefetch into the memory cache.
+     */
+    private final class PrefetchRequest implements Request
+    {
+        private final Callback callback;
+
+        // The decode the prefetch waits for, or null.
+        private DecodeTask task;
+        private boolean    finished;
+        private boolean    failed;
+        private boolean    cancelled;
+        private boolean    skipped;
+
+        public PrefetchRequest( Callback callback )
+        {
+            this.callback = callback;
+        }
+
+        @Override
+        public void cancel()
+        {
+            if( finished || cancelled )
+            {
+                return;
+            }
+
+            cancelled = true;
+
+            if( task != null )
+            {
+                task.prefetches.remove(this);
+                cancelIfUnused(task);
+                task = null;
+            }
+        }
+
+        @Override
+        public boolean isFinished()
+        {
+            return finished;
+        }
+
+        @Override
+        public boolean hasFailed()
+        {
+            return failed;
+        }
+
+        @Override
+        public boolean isSkipped()
+        {
+            return skipped;
+        }
+
+        private void finish( boolean failed )
+        {
+            if( cancelled )
+            {
+                return;
+            }
+
+            this.finished = true;
+            this.failed = failed;
+
+            if( callback != null )
+            {
+                if( failed )
+                {
+                    callback.onFailed();
+                }
+                else
+                {
+                    callback.onCompleted();
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodes a single image on the executor, for all the ImageViews and prefetches waiting for it.
+     * Ordered by priority, and then by the order they were issued in.
+     */
+    private final class DecodeTask implements Runnable, Comparable<DecodeTask>
+    {
+        private final String key;
+        private final Uri    uri;
+        private final int    width;
+        private final int    height;
+        private final long   sequence;
+
+        // Only changed while the task is out of the queue.
+        private int priority;
+        private volatile boolean cancelled;
+
+        // The loads and prefetches waiting for the decode, only used on the UI thread.
+        private final ArrayList<Target>          targets    = new ArrayList<Target>(1);
+        private final ArrayList<PrefetchRequest> prefetches = new ArrayList<PrefetchRequest>(1);
+
+        public DecodeTask( String key, Uri uri, int width, int height, int priority, long sequence )
+        {
+            this.key = key;
+            this.uri = uri;
+            this.width = width;
+            this.height = height;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run()
+        {
+            if( cancelled )
+            {
+                return;
+            }
+
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+            final Bitmap bitmap = decode(this);
+
+            uiHandler.post(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    onDecoded(DecodeTask.this, bitmap);
+                }
+            });
+        }
+
+        @Override
+        public int compareTo( DecodeTask other )
+        {
+            if( priority != other.priority )
+            {
+                return priority > other.priority ? -1 : 1;
+            }
+
+            return sequence < other.sequence ? -1 : ( sequence == other.sequence ? 0 : 1 );
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package pt.nmusic.imageswitcher;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+
+/**
+ * A pool of Bitmaps that are no longer shown or cached, to decode new images into with
+ * {@link android.graphics.BitmapFactory.Options#inBitmap} instead of allocating new Bitmaps.
+ * <p/>
+ * The Bitmaps are kept in buckets by their allocation size, rounded up to a power of two, so a
+ * Bitmap large enough for a decode is found without going through the whole pool. From KitKat
+ * any Bitmap at least as large as the decoded image can be re-used, before KitKat only a Bitmap
+ * of exactly the decoded size (and only when decoding without sampling).
+ * <p/>
+ * The pool holds at most its maximum number of bytes, the Bitmaps pooled the longest ago are
+ * recycled first. All the functions are thread safe.
+ */
+final class BitmapPool
+{
+    private final int maxBytes;
+    private int bytes = 0;
+
+    // The pooled Bitmaps per bucket, keyed by the power of two their allocation size rounds up to.
+    private final SparseArray<ArrayList<Bitmap>> buckets = new SparseArray<ArrayList<Bitmap>>();
+    // All the pooled Bitmaps, in the order they were pooled.
+    private final ArrayList<Bitmap> order = new ArrayList<Bitmap>();
+
+    /**
+     * @param maxBytes The maximum number of bytes of the pooled Bitmaps.
+     */
+    BitmapPool( int maxBytes )
+    {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Takes a Bitmap out of the pool to decode an image of the given size into.
+     *
+     * @param width      The width of the encoded image.
+     * @param height     The height of the encoded image.
+     * @param sampleSize The inSampleSize the image is decoded with.
+     *
+     * @return The Bitmap, or null if there is none that fits.
+     */
+    synchronized Bitmap get( int width, int height, int sampleSize )
+    {
+        int decodedWidth = ( width + sampleSize - 1 ) / sampleSize;
+        int decodedHeight = ( height + sampleSize - 1 ) / sampleSize;
+
+        // ARGB_8888
+        int neededBytes = decodedWidth * decodedHeight * 4;
+
+        if( Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT )
+        {
+            // A Bitmap in the next bucket up is at most four times the needed size.
+            int bucket = getBucket(neededBytes);
+
+            Bitmap bitmap = take(bucket, neededBytes, 0, 0);
+            if( bitmap == null )
+            {
+                bitmap = take(bucket << 1, neededBytes, 0, 0);
+            }
+
+            return bitmap;
+        }
+
+        if( sampleSize != 1 )
+        {
+            return null;
+        }
+
+        return take(getBucket(neededBytes), neededBytes, decodedWidth, decodedHeight);
+    }
+
+    /**
+     * Puts a Bitmap that is no longer shown or cached into the pool. Bitmaps that cannot be
+     * decoded into are ignored.
+     */
+    synchronized void put( Bitmap bitmap )
+    {
+        if( bitmap == null || bitmap.isRecycled() || !bitmap.isMutable() || order.contains(bitmap) )
+        {
+            return;
+        }
+
+        int size = getAllocationSize(bitmap);
+
+        if( size > maxBytes )
+        {
+            bitmap.recycle();
+            return;
+        }
+
+        int bucket = getBucket(size);
+        ArrayList<Bitmap> bitmaps = buckets.get(bucket);
+
+        if( bitmaps == null )
+        {
+            bitmaps = new ArrayList<Bitmap>();
+            buckets.put(bucket, bitmaps);
+        }
+
+        bitmaps.add(bitmap);
+        order.add(bitmap);
+        bytes += size;
+
+        trimToSize(maxBytes);
+    }
+
+    /**
+     * Recycles all the pooled Bitmaps.
+     */
+    synchronized void clear()
+    {
+        trimToSize(0);
+    }
+
+    synchronized int getSize()
+    {
+        return bytes;
+    }
+
+    /**
+     * Takes the first Bitmap of the given bucket of at least the given size and, if not 0, of
+     * exactly the given dimensions.
+     */
+    private Bitmap take( int bucket, int neededBytes, int width, int height )
+    {
+        ArrayList<Bitmap> bitmaps = buckets.get(bucket);
+
+        if( bitmaps == null )
+        {
+            return null;
+        }
+
+        for( int i = 0; i < bitmaps.size(); i++ )
+        {
+            Bitmap bitmap = bitmaps.get(i);
+
+            if( getAllocationSize(bitmap) < neededBytes )
+            {
+                continue;
+            }
+
+            if( width != 0 && ( bitmap.getWidth() != width || bitmap.getHeight() != height ) )
+            {
+                continue;
+            }
+
+            bitmaps.remove(i);
+            order.remove(bitmap);
+            bytes -= getAllocationSize(bitmap);
+
+            return bitmap;
+        }
+
+        return null;
+    }
+
+    private void trimToSize( int size )
+    {
+        while( bytes > size && !order.isEmpty() )
+        {
+            Bitmap bitmap = order.remove(0);
+            int allocationSize = getAllocationSize(bitmap);
+
+            buckets.get(getBucket(allocationSize)).remove(bitmap);
+            bytes -= allocationSize;
+
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Returns the bytes of memory the given Bitmap holds, which can be more than its pixels need
+     * once it has been decoded into.
+     */
+    static int getAllocationSize( Bitmap bitmap )
+    {
+        if( Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT )
+        {
+            return bitmap.getAllocationByteCount();
+        }
+
+        return bitmap.getByteCount();
+    }
+
+    /**
+     * Returns the given size rounded up to a power of two.
+     */
+    private static int getBucket( int size )
+    {
+        int highest = Integer.highestOneBit(Math.max(1, size));
+
+        return highest == size ? size : highest << 1;
+    }
+}
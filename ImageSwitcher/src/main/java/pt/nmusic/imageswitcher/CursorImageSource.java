@@ -0,0 +1,103 @@
+package pt.nmusic.imageswitcher;
+
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.net.Uri;
+import android.util.LruCache;
+
+/**
+ * An {@link ImageSource} backed by a Cursor. The Uris are only created for the rows that are
+ * actually used, so a Cursor with hundreds of thousands of rows costs no more than a small one.
+ * <p/>
+ * The rows either contain the Uri as a String, or an id that is appended to a base content Uri
+ * (for example {@code MediaStore.Images.Media.EXTERNAL_CONTENT_URI} and {@code _ID}).
+ * <p/>
+ * The Cursor is not closed by this class.
+ */
+public class CursorImageSource implements ImageSource
+{
+    // The number of recently used Uris that are kept, so they are not parsed again.
+    private static final int URI_CACHE_SIZE = 32;
+
+    private final Cursor cursor;
+    private final int    columnIndex;
+    private final Uri    baseUri;
+
+    private final LruCache<Integer, Uri> uriCache = new LruCache<Integer, Uri>(URI_CACHE_SIZE);
+
+    /**
+     * Constructor for a Cursor whose given column contains the Uri of each row as a String.
+     */
+    public CursorImageSource( Cursor cursor, String uriColumn )
+    {
+        this(cursor, uriColumn, null);
+    }
+
+    /**
+     * Constructor for a Cursor whose given column contains an id, which is appended to the given
+     * base Uri to create the Uri of each row. If the base Uri is null, the column is instead read
+     * as a Uri String.
+     */
+    public CursorImageSource( Cursor cursor, String column, Uri baseUri )
+    {
+        if( cursor == null )
+        {
+            throw new IllegalArgumentException("Given Cursor was null! Error!");
+        }
+
+        this.cursor = cursor;
+        this.columnIndex = cursor.getColumnIndexOrThrow(column);
+        this.baseUri = baseUri;
+    }
+
+    @Override
+    public int size()
+    {
+        return cursor.isClosed() ? 0 : cursor.getCount();
+    }
+
+    @Override
+    public Uri get( int index )
+    {
+        Uri uri = uriCache.get(index);
+
+        if( uri == null && !cursor.isClosed() && cursor.moveToPosition(index) )
+        {
+            if( baseUri != null )
+            {
+                uri = ContentUris.withAppendedId(baseUri, cursor.getLong(columnIndex));
+            }
+            else
+            {
+                String uriString = cursor.getString(columnIndex);
+                uri = uriString != null ? Uri.parse(uriString) : null;
+            }
+
+            if( uri != null )
+            {
+                uriCache.put(index, uri);
+            }
+        }
+
+        return uri;
+    }
+
+    @Override
+    public Uri getThumbnail( int index )
+    {
+        // Content providers create their own thumbnails, see setLocalThumbnailPreviewsEnabled.
+        return null;
+    }
+
+    @Override
+    public void request( int index )
+    {
+        // The Cursor loads its own window of rows.
+    }
+
+    @Override
+    public void setListener( Listener listener )
+    {
+        // A Cursor does not change, a new CursorImageSource is needed for a new Cursor.
+    }
+}
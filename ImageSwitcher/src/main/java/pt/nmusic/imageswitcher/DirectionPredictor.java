@@ -0,0 +1,129 @@
+package pt.nmusic.imageswitcher;
+
+/**
+ * Predicts the direction the user is browsing in from the recent switches.
+ * <p/>
+ * Every switch moves a score towards its direction, with quick switches (a short dwell time on
+ * the previous item, or a fast swipe) counting more than slow ones. Older switches fade out, so
+ * the prediction follows the user when they turn around. The predicted direction is the sign of
+ * the score, once the score is above the minimum confidence.
+ * <p/>
+ * All the functions must be called on the UI thread.
+ */
+public class DirectionPredictor
+{
+    // How much of the previous score is kept on every switch.
+    private float decay = 0.7f;
+
+    // The score needed before a direction is predicted.
+    private float minConfidence = 0.6f;
+
+    // Switches after less dwell time than this (in milliseconds) count as quick.
+    private long quickDwellTime = 1500;
+
+    // Swipes faster than this (in screen widths per second) count as quick.
+    private float quickSpeed = 2f;
+
+    // Between -1 (previous) and 1 (next).
+    private float score = 0;
+    // The time of the last switch, or 0 if there was none.
+    private long  lastSwitchTime = 0;
+
+    /*******************
+     * CONFIGURATION
+     *******************/
+
+    /**
+     * Sets how much of the previous score is kept on every switch, between 0 (only the last switch
+     * counts) and 1 (exclusive).
+     */
+    public void setDecay( float decay )
+    {
+        if( decay < 0 || decay >= 1 )
+        {
+            throw new IllegalArgumentException("Given decay was outside [0, 1)! Error!");
+        }
+
+        this.decay = decay;
+    }
+
+    /**
+     * Sets the confidence (between 0 and 1) needed before a direction is predicted.
+     */
+    public void setMinConfidence( float minConfidence )
+    {
+        this.minConfidence = minConfidence;
+    }
+
+    /**
+     * Sets the dwell time (in milliseconds) and swipe speed (in screen widths per second) below
+     * and above which a switch counts as quick.
+     */
+    public void setQuickSwitch( long quickDwellTime, float quickSpeed )
+    {
+        this.quickDwellTime = quickDwellTime;
+        this.quickSpeed = quickSpeed;
+    }
+
+    /*******************
+     * PREDICTION
+     *******************/
+
+    /**
+     * Records a switch.
+     *
+     * @param direction 1 for next and -1 for previous.
+     * @param speed     The speed of the swipe (in screen widths per second), or 0 if the switch was
+     *                  not swiped.
+     * @param timeMs    The time of the switch, in milliseconds.
+     */
+    public void onSwitch( int direction, float speed, long timeMs )
+    {
+        float weight = 1;
+
+        if( lastSwitchTime != 0 && timeMs - lastSwitchTime < quickDwellTime )
+        {
+            weight += 0.5f;
+        }
+
+        if( speed > quickSpeed )
+        {
+            weight += 0.5f;
+        }
+
+        score = ( score * decay ) + ( ( direction < 0 ? -1 : 1 ) * ( 1 - decay ) * weight );
+        score = Math.max(-1, Math.min(1, score));
+
+        lastSwitchTime = timeMs;
+    }
+
+    /**
+     * Returns the predicted direction, 1 for next, -1 for previous or 0 if there is no prediction.
+     */
+    public int getPredictedDirection()
+    {
+        if( Math.abs(score) < minConfidence )
+        {
+            return 0;
+        }
+
+        return score > 0 ? 1 : -1;
+    }
+
+    /**
+     * Returns the confidence of the prediction, between 0 and 1.
+     */
+    public float getConfidence()
+    {
+        return Math.abs(score);
+    }
+
+    /**
+     * Forgets all the recorded switches.
+     */
+    public void reset()
+    {
+        score = 0;
+        lastSwitchTime = 0;
+    }
+}
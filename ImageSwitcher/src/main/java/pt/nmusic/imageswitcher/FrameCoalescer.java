@@ -0,0 +1,57 @@
+package pt.nmusic.imageswitcher;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+
+/**
+ * Runs a Runnable at most once per Choreographer frame, however often it is scheduled in between
+ * frames. Used to apply the drag translations once per frame instead of once per touch event, and
+ * to wait for the next frame before pooling the Bitmaps it no longer draws.
+ * <p/>
+ * Choreographer is only available from Jelly Bean, so check the SDK version before creating an
+ * instance. All the functions must be called on the UI thread.
+ */
+@TargetApi( Build.VERSION_CODES.JELLY_BEAN )
+class FrameCoalescer implements Choreographer.FrameCallback
+{
+    private final Runnable onFrame;
+
+    private boolean scheduled = false;
+
+    public FrameCoalescer( Runnable onFrame )
+    {
+        this.onFrame = onFrame;
+    }
+
+    /**
+     * Runs the Runnable on the next frame, unless it is already scheduled for it.
+     */
+    public void schedule()
+    {
+        if( !scheduled )
+        {
+            scheduled = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Cancels the scheduled run, if any.
+     */
+    public void cancel()
+    {
+        if( scheduled )
+        {
+            scheduled = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame( long frameTimeNanos )
+    {
+        scheduled = false;
+        onFrame.run();
+    }
+}
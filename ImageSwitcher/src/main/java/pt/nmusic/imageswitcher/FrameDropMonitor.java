@@ -0,0 +1,97 @@
+package pt.nmusic.imageswitcher;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.view.Choreographer;
+import android.view.WindowManager;
+
+/**
+ * Counts the frames dropped between {@link #start()} and {@link #stop()}, by comparing the time
+ * between consecutive Choreographer frames with the frame interval of the display.
+ * <p/>
+ * Choreographer is only available from Jelly Bean, so check the SDK version before creating an
+ * instance. All the functions must be called on the UI thread.
+ */
+@TargetApi( Build.VERSION_CODES.JELLY_BEAN )
+class FrameDropMonitor implements Choreographer.FrameCallback
+{
+    private final long frameIntervalNanos;
+
+    private boolean running = false;
+    private long    lastFrameTimeNanos;
+    private int     droppedFrames;
+
+    public FrameDropMonitor( Context context )
+    {
+        WindowManager wm = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        float refreshRate = wm.getDefaultDisplay().getRefreshRate();
+
+        // Some devices report nonsense, fall back to 60 Hz.
+        if( refreshRate < 10 )
+        {
+            refreshRate = 60;
+        }
+
+        frameIntervalNanos = Math.round(1000000000d / refreshRate);
+    }
+
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    /**
+     * Starts counting dropped frames (from zero).
+     */
+    public void start()
+    {
+        if( running )
+        {
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        running = true;
+        lastFrameTimeNanos = 0;
+        droppedFrames = 0;
+
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /**
+     * Stops counting and returns the number of frames dropped since {@link #start()}.
+     */
+    public int stop()
+    {
+        if( running )
+        {
+            running = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        return droppedFrames;
+    }
+
+    @Override
+    public void doFrame( long frameTimeNanos )
+    {
+        if( !running )
+        {
+            return;
+        }
+
+        if( lastFrameTimeNanos != 0 )
+        {
+            // The number of frame intervals since the last frame, minus the one that was expected.
+            long intervals = ( frameTimeNanos - lastFrameTimeNanos + ( frameIntervalNanos / 2 ) ) / frameIntervalNanos;
+
+            if( intervals > 1 )
+            {
+                droppedFrames += intervals - 1;
+            }
+        }
+
+        lastFrameTimeNanos = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+}
@@ -0,0 +1,269 @@
+package pt.nmusic.imageswitcher;
+
+import android.graphics.drawable.Animatable;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.widget.ImageView;
+
+import com.facebook.common.executors.CallerThreadExecutor;
+import com.facebook.datasource.BaseDataSubscriber;
+import com.facebook.datasource.DataSource;
+import com.facebook.drawee.backends.pipeline.Fresco;
+import com.facebook.drawee.controller.BaseControllerListener;
+import com.facebook.drawee.interfaces.DraweeController;
+import com.facebook.drawee.view.DraweeView;
+import com.facebook.imagepipeline.common.Priority;
+import com.facebook.imagepipeline.common.ResizeOptions;
+import com.facebook.imagepipeline.image.ImageInfo;
+import com.facebook.imagepipeline.request.ImageRequest;
+import com.facebook.imagepipeline.request.ImageRequestBuilder;
+
+import java.util.HashMap;
+
+/**
+ * The {@link ImageLoader} for Fresco DraweeViews, loading through Fresco's image pipeline and
+ * prefetching into its bitmap and disk caches. Fresco must have been initialized.
+ * <p/>
+ * The images are loaded progressively, and use the local thumbnail previews where available.
+ */
+public class FrescoImageLoader implements ImageLoader
+{
+    private final Handler uiHandler = new Handler(Looper.getMainLooper());
+
+    // The ControllerListener of each DraweeView, re-used for every image loaded into it.
+    private final HashMap<ImageView, CallbackControllerListener> listeners = new HashMap<ImageView, CallbackControllerListener>();
+
+    // The last ResizeOptions, re-used while the size is unchanged.
+    private ResizeOptions resizeOptions;
+
+    @Override
+    public void load( ImageView view, Uri uri, Uri thumbnailUri, int width, int height, int priority, Callback callback )
+    {
+        DraweeView drawee = (DraweeView) view;
+
+        CallbackControllerListener listener = listeners.get(view);
+        if( listener == null )
+        {
+            listener = new CallbackControllerListener();
+            listeners.put(view, listener);
+        }
+
+        listener.callback = callback;
+
+        ImageRequest lowResRequest = null;
+        if( thumbnailUri != null )
+        {
+            // Thumbnails are requested at a higher priority than any other image, as they are what
+            // the user sees first.
+            lowResRequest = ImageRequestBuilder
+                    .newBuilderWithSource(thumbnailUri)
+                    .setRequestPriority(Priority.HIGH)
+                    .build();
+        }
+
+        DraweeController controller = Fresco.newDraweeControllerBuilder()
+                .setImageRequest(buildImageRequest(uri, width, height, priority))
+                .setLowResImageRequest(lowResRequest)
+                .setControllerListener(listener)
+                .setOldController(drawee.getController())
+                .build();
+
+        drawee.setController(controller);
+    }
+
+    @Override
+    public void release( ImageView view )
+    {
+        ( (DraweeView) view ).setController(null);
+    }
+
+    @Override
+    public Request prefetch( Uri uri, int width, int height, int priority, boolean toMemory, Callback callback )
+    {
+        ImageRequest request = buildImageRequest(uri, width, height, priority);
+
+        DataSource<Void> dataSource;
+        if( toMemory )
+        {
+            dataSource = Fresco.getImagePipeline().prefetchToBitmapCache(request, null);
+        }
+        else
+        {
+            dataSource = Fresco.getImagePipeline().prefetchToDiskCache(request, null);
+        }
+
+        if( callback != null )
+        {
+            dataSource.subscribe(new PrefetchSubscriber(callback), CallerThreadExecutor.getInstance());
+        }
+
+        return new DataSourceRequest(dataSource);
+    }
+
+    @Override
+    public void clearMemoryCaches()
+    {
+        Fresco.getImagePipeline().clearMemoryCaches();
+    }
+
+    /**
+     * Builds the ImageRequest used for the given Uri, both when loading a DraweeView and when
+     * prefetching, so the prefetched images match the cache entries of the loaded ones.
+     */
+    private ImageRequest buildImageRequest( Uri uri, int width, int height, int priority )
+    {
+        ImageRequestBuilder builder = ImageRequestBuilder
+                .newBuilderWithSource(uri)
+                .setProgressiveRenderingEnabled(true)
+                .setLocalThumbnailPreviewsEnabled(true)
+                .setRequestPriority(toFrescoPriority(priority));
+
+        if( width > 0 && height > 0 )
+        {
+            if( resizeOptions == null || resizeOptions.width != width || resizeOptions.height != height )
+            {
+                resizeOptions = new ResizeOptions(width, height);
+            }
+
+            builder.setResizeOptions(resizeOptions);
+        }
+
+        return builder.build();
+    }
+
+    private static Priority toFrescoPriority( int priority )
+    {
+        switch( priority )
+        {
+            case PRIORITY_HIGH:
+                return Priority.HIGH;
+            case PRIORITY_LOW:
+                return Priority.LOW;
+            default:
+                return Priority.MEDIUM;
+        }
+    }
+
+    /**
+     * Forwards the events of the controller of a DraweeView to its Callback.
+     */
+    private static final class CallbackControllerListener extends BaseControllerListener<ImageInfo>
+    {
+        private Callback callback;
+
+        @Override
+        public void onSubmit( String id, Object callerContext )
+        {
+            callback.onSubmit();
+        }
+
+        @Override
+        public void onFinalImageSet( String id, ImageInfo imageInfo, Animatable animatable )
+        {
+            callback.onCompleted();
+        }
+
+        @Override
+        public void onFailure( String id, Throwable throwable )
+        {
+            callback.onFailed();
+        }
+
+        @Override
+        public void onRelease( String id )
+        {
+            callback.onRelease();
+        }
+    }
+
+    /**
+     * A prefetch, cancelled by closing its DataSource.
+     */
+    private static final class DataSourceRequest implements Request
+    {
+        private final DataSource<Void> dataSource;
+
+        public DataSourceRequest( DataSource<Void> dataSource )
+        {
+            this.dataSource = dataSource;
+        }
+
+        @Override
+        public void cancel()
+        {
+            dataSource.close();
+        }
+
+        @Override
+        public boolean isFinished()
+        {
+            return dataSource.isFinished();
+        }
+
+        @Override
+        public boolean hasFailed()
+        {
+            return dataSource.hasFailed();
+        }
+
+        @Override
+        public boolean isSkipped()
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Subscribes to a prefetch DataSource and hands the result back to the UI thread.
+     */
+    private final class PrefetchSubscriber extends BaseDataSubscriber<Void>
+    {
+        private final Callback callback;
+
+        public PrefetchSubscriber( Callback callback )
+        {
+            this.callback = callback;
+        }
+
+        @Override
+        protected void onNewResultImpl( DataSource<Void> dataSource )
+        {
+            if( dataSource.isFinished() )
+            {
+                postFinished(dataSource, false);
+            }
+        }
+
+        @Override
+        protected void onFailureImpl( DataSource<Void> dataSource )
+        {
+            postFinished(dataSource, true);
+        }
+
+        private void postFinished( final DataSource<Void> dataSource, final boolean failed )
+        {
+            uiHandler.post(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    // Never report a cancelled prefetch.
+                    if( dataSource.isClosed() )
+                    {
+                        return;
+                    }
+
+                    if( failed )
+                    {
+                        callback.onFailed();
+                    }
+                    else
+                    {
+                        callback.onCompleted();
+                    }
+                }
+            });
+        }
+    }
+}
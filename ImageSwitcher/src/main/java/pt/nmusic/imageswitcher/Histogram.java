@@ -0,0 +1,167 @@
+package pt.nmusic.imageswitcher;
+
+/**
+ * A histogram of long values with fixed bucket bounds. Recording a value does not allocate, so it
+ * can be used on every frame or touch event.
+ */
+public class Histogram
+{
+    // The (inclusive) upper bounds of the buckets, the last bucket holds everything above them.
+    private final long[] upperBounds;
+    private final long[] bucketCounts;
+
+    private long count;
+    private long sum;
+    private long min;
+    private long max;
+
+    /**
+     * @param upperBounds The (inclusive) upper bounds of the buckets, in ascending order. One more
+     *                    bucket is added for the values above the last bound.
+     */
+    public Histogram( long[] upperBounds )
+    {
+        if( upperBounds == null || upperBounds.length < 1 )
+        {
+            throw new IllegalArgumentException("Given bucket bounds were empty! Error!");
+        }
+
+        for( int i = 1; i < upperBounds.length; i++ )
+        {
+            if( upperBounds[i] <= upperBounds[i - 1] )
+            {
+                throw new IllegalArgumentException("Given bucket bounds were not ascending! Error!");
+            }
+        }
+
+        this.upperBounds = upperBounds.clone();
+        this.bucketCounts = new long[upperBounds.length + 1];
+    }
+
+    /**
+     * Returns a Histogram with buckets for 0, 1, 2, 4, 8, ... up to the given maximum.
+     */
+    public static Histogram exponential( long maxBound )
+    {
+        int buckets = 1;
+        for( long bound = 1; bound <= maxBound; bound *= 2 )
+        {
+            buckets++;
+        }
+
+        long[] upperBounds = new long[buckets];
+        upperBounds[0] = 0;
+        for( int i = 1; i < buckets; i++ )
+        {
+            upperBounds[i] = 1L << ( i - 1 );
+        }
+
+        return new Histogram(upperBounds);
+    }
+
+    public synchronized void record( long value )
+    {
+        int bucket = 0;
+        while( bucket < upperBounds.length && value > upperBounds[bucket] )
+        {
+            bucket++;
+        }
+
+        bucketCounts[bucket]++;
+
+        if( count == 0 || value < min )
+        {
+            min = value;
+        }
+
+        if( count == 0 || value > max )
+        {
+            max = value;
+        }
+
+        count++;
+        sum += value;
+    }
+
+    public synchronized void reset()
+    {
+        for( int i = 0; i < bucketCounts.length; i++ )
+        {
+            bucketCounts[i] = 0;
+        }
+
+        count = 0;
+        sum = 0;
+        min = 0;
+        max = 0;
+    }
+
+    public synchronized long getCount()
+    {
+        return count;
+    }
+
+    public synchronized long getMin()
+    {
+        return min;
+    }
+
+    public synchronized long getMax()
+    {
+        return max;
+    }
+
+    public synchronized double getMean()
+    {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Returns the upper bound of the bucket that holds the given percentile (0 - 100), or the
+     * maximum recorded value if that bucket is the one above the last bound.
+     */
+    public synchronized long getPercentile( double percentile )
+    {
+        if( count == 0 )
+        {
+            return 0;
+        }
+
+        long target = (long) Math.ceil(count * ( percentile / 100d ));
+        long seen = 0;
+
+        for( int i = 0; i < upperBounds.length; i++ )
+        {
+            seen += bucketCounts[i];
+
+            if( seen >= target )
+            {
+                return Math.min(upperBounds[i], max);
+            }
+        }
+
+        return max;
+    }
+
+    public int getBucketCount()
+    {
+        return bucketCounts.length;
+    }
+
+    /**
+     * Returns the number of values recorded in the given bucket.
+     */
+    public synchronized long getBucketValueCount( int bucket )
+    {
+        return bucketCounts[bucket];
+    }
+
+    /**
+     * Returns the (inclusive) upper bound of the given bucket, or {@link Long#MAX_VALUE} for the
+     * last bucket.
+     */
+    public long getBucketUpperBound( int bucket )
+    {
+        return bucket < upperBounds.length ? upperBounds[bucket] : Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,108 @@
+package pt.nmusic.imageswitcher;
+
+import android.net.Uri;
+import android.widget.ImageView;
+
+/**
+ * Loads the images of an {@link ImageSwitcher} into its ImageViews, and prefetches the ones around
+ * them. The ImageSwitcher only talks to its loader through this interface.
+ * <p/>
+ * {@link FrescoImageLoader} loads into Fresco DraweeViews, and {@link BitmapImageLoader} is a
+ * lightweight loader for local images in plain ImageViews.
+ * <p/>
+ * All the functions are called on the UI thread, and all the Callbacks must be called on the UI
+ * thread as well. The Callbacks of a prefetch must never be called from within
+ * {@link #prefetch}.
+ */
+public interface ImageLoader
+{
+    // The priorities of a load or prefetch.
+    int PRIORITY_LOW    = 0;
+    int PRIORITY_MEDIUM = 1;
+    int PRIORITY_HIGH   = 2;
+
+    /**
+     * Receives the lifecycle of a load or prefetch.
+     */
+    interface Callback
+    {
+        /**
+         * The request has been issued.
+         */
+        void onSubmit();
+
+        /**
+         * The (final) image has been loaded.
+         */
+        void onCompleted();
+
+        /**
+         * The image could not be loaded.
+         */
+        void onFailed();
+
+        /**
+         * The request (or the image of a load) has been released, for example because another
+         * image was bound to the View. If this happens before the request completed or failed, it
+         * was cancelled.
+         */
+        void onRelease();
+    }
+
+    /**
+     * A prefetch in flight.
+     */
+    interface Request
+    {
+        /**
+         * Cancels the prefetch, if it has not finished yet.
+         */
+        void cancel();
+
+        boolean isFinished();
+
+        boolean hasFailed();
+
+        /**
+         * Whether the prefetch had nothing to load, for example because its image was already in
+         * memory. Its time then says nothing about how long a load takes.
+         */
+        boolean isSkipped();
+    }
+
+    /**
+     * Loads the given image into the View, replacing (and releasing) any image loaded into it
+     * before.
+     *
+     * @param view         One of the ImageViews of the ImageSwitcher.
+     * @param uri          The Uri of the image.
+     * @param thumbnailUri The Uri of a thumbnail to show while the image loads, or null.
+     * @param width        The width to decode the image at (about), or 0 for its full size.
+     * @param height       The height to decode the image at (about), or 0 for its full size.
+     * @param priority     One of the PRIORITY_ constants.
+     * @param callback     The Callback of the load, re-used for every load into the same View.
+     */
+    void load( ImageView view, Uri uri, Uri thumbnailUri, int width, int height, int priority, Callback callback );
+
+    /**
+     * Releases the image loaded into the View, cancelling its load if it is still in flight.
+     */
+    void release( ImageView view );
+
+    /**
+     * Prefetches the given image. Only {@link Callback#onCompleted()} and
+     * {@link Callback#onFailed()} are called for a prefetch, and never once it has been cancelled.
+     *
+     * @param toMemory Whether to prefetch the decoded image into memory, or only (if the loader
+     *                 has one) into the disk cache.
+     * @param callback The Callback of the prefetch, can be null.
+     *
+     * @return The Request, to cancel it with.
+     */
+    Request prefetch( Uri uri, int width, int height, int priority, boolean toMemory, Callback callback );
+
+    /**
+     * Clears the memory caches of the loader, except what is shown in the ImageViews.
+     */
+    void clearMemoryCaches();
+}
@@ -0,0 +1,615 @@
+package pt.nmusic.imageswitcher;
+
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+import android.util.SparseIntArray;
+
+import java.util.ArrayList;
+
+/**
+ * Prefetches the images just outside the DraweeViews tracked by the {@link ViewTracker}, so they
+ * are already in the caches of its {@link ImageLoader} when they are rotated into a slot.
+ * <p/>
+ * Items close to the current index are prefetched into the bitmap (memory) cache, items further
+ * away only into the disk cache (if the ImageLoader has one). Nearer items are requested first,
+ * with the direction of the last switch favoured. When the browsing direction is predicted (see
+ * {@link DirectionPredictor}), the window behind the user is given to the predicted direction
+ * instead. Only a limited number of requests are in flight at the same time and any request for
+ * an item that falls out of the window is cancelled.
+ * <p/>
+ * The prefetcher shares its request and bitmap budget with the prefetchers of all the other
+ * ImageSwitchers through the {@link SwitcherCoordinator}, and is paused while its DraweeViews are
+ * detached from the window or scrolled off screen.
+ * <p/>
+ * With a {@link PrefetchPolicy}, the number of items prefetched ahead follows the measured pace of
+ * the user and the measured load latency of the prefetches instead.
+ * <p/>
+ * All the functions must be called on the UI thread.
+ */
+public class ImagePrefetcher
+{
+    private final ImageSwitcher imageSwitcher;
+    private final RequestStats  requestStats;
+
+    // The number of items to prefetch in (and against) the direction of the last switch.
+    private int prefetchAhead  = 4;
+    private int prefetchBehind = 2;
+
+    // Items up to this distance from the current index are prefetched into the bitmap cache.
+    private int bitmapCacheDistance = 2;
+
+    // The maximum number of prefetch requests in flight at any time.
+    private int maxConcurrentRequests = 2;
+
+    private boolean enabled = true;
+    // A boolean indicating whether the prefetching is paused, because the DraweeViews are detached
+    // or off screen.
+    private boolean paused  = false;
+
+    // Shares the request and bitmap budget with the other prefetchers. Can be null.
+    private SwitcherCoordinator coordinator = SwitcherCoordinator.getInstance();
+
+    // Decides the number of items to prefetch ahead, instead of prefetchAhead. Can be null.
+    private PrefetchPolicy policy;
+
+    // The window the prefetcher was last updated with.
+    private int centerIndex;
+    private int direction = 1;
+    private int excludedDistance;
+    // The window in (and against) the direction, after applying the prediction.
+    private int windowAhead;
+    private int windowBehind;
+
+    // A high priority request raising the priority of the image the user is swiping towards.
+    private ImageLoader.Request boostRequest;
+    private int                 boostIndex;
+
+    // Indexes waiting to be prefetched, in priority order.
+    private final ArrayList<Integer>               pending  = new ArrayList<Integer>();
+    // The requests currently in flight, per index.
+    private final SparseArray<ImageLoader.Request> inFlight = new SparseArray<ImageLoader.Request>();
+    // Indexes that have been prefetched while inside the current window.
+    private final SparseBooleanArray               finished = new SparseBooleanArray();
+    // The bitmap bytes reserved with the coordinator, per index prefetched into the bitmap cache.
+    private final SparseIntArray                   reservedBytes = new SparseIntArray();
+
+    /**
+     * @param imageSwitcher The ImageSwitcher used to resolve and build the prefetched requests.
+     */
+    public ImagePrefetcher( ImageSwitcher imageSwitcher )
+    {
+        if( imageSwitcher == null )
+        {
+            throw new IllegalArgumentException("Given ImageSwitcher was null! Error!");
+        }
+
+        this.imageSwitcher = imageSwitcher;
+        this.requestStats = imageSwitcher.getRequestStats();
+    }
+
+    /*******************
+     * CONFIGURATION
+     *******************/
+
+    /**
+     * Sets the number of items to prefetch in the direction of the last switch, and against it.
+     */
+    public void setWindow( int prefetchAhead, int prefetchBehind )
+    {
+        if( prefetchAhead < 0 || prefetchBehind < 0 )
+        {
+            throw new IllegalArgumentException("Given prefetch window was negative! Error!");
+        }
+
+        this.prefetchAhead = prefetchAhead;
+        this.prefetchBehind = prefetchBehind;
+    }
+
+    /**
+     * Sets the distance (from the current index) up to which items are prefetched into the bitmap
+     * cache. Items further away are only prefetched into the disk cache.
+     */
+    public void setBitmapCacheDistance( int bitmapCacheDistance )
+    {
+        this.bitmapCacheDistance = bitmapCacheDistance;
+    }
+
+    /**
+     * Sets the maximum number of prefetch requests in flight at the same time.
+     */
+    public void setMaxConcurrentRequests( int maxConcurrentRequests )
+    {
+        if( maxConcurrentRequests < 1 )
+        {
+            throw new IllegalArgumentException("Given max concurrent requests was less than one! Error!");
+        }
+
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    /**
+     * Enables or disables prefetching. Disabling cancels all requests in flight.
+     */
+    public void setEnabled( boolean enabled )
+    {
+        this.enabled = enabled;
+
+        if( !enabled )
+        {
+            cancelAll();
+        }
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Sets the SwitcherCoordinator the request and bitmap budget is shared through. By default
+     * this is {@link SwitcherCoordinator#getInstance()}. Can be null to only use the limits of this
+     * prefetcher.
+     */
+    public void setCoordinator( SwitcherCoordinator coordinator )
+    {
+        cancelAll();
+        this.coordinator = coordinator;
+        refresh();
+    }
+
+    /**
+     * Returns the SwitcherCoordinator the budget is shared through, or null if there is none.
+     */
+    public SwitcherCoordinator getCoordinator()
+    {
+        return coordinator;
+    }
+
+    /**
+     * Sets the PrefetchPolicy deciding the number of items to prefetch in the direction of the
+     * last switch, which then replaces the one of {@link #setWindow(int, int)}. The prefetcher
+     * reports the load latency of its requests to it. Null, the default, for a fixed window.
+     */
+    public void setPolicy( PrefetchPolicy policy )
+    {
+        this.policy = policy;
+    }
+
+    public PrefetchPolicy getPolicy()
+    {
+        return policy;
+    }
+
+    /**
+     * Pauses or resumes the prefetching. Pausing cancels all requests in flight, resuming
+     * prefetches the last window again.
+     */
+    public void setPaused( boolean paused )
+    {
+        if( this.paused == paused )
+        {
+            return;
+        }
+
+        this.paused = paused;
+
+        if( paused )
+        {
+            cancelAll();
+        }
+        else
+        {
+            refresh();
+        }
+    }
+
+    public boolean isPaused()
+    {
+        return paused;
+    }
+
+    /*******************
+     * PREFETCHING
+     *******************/
+
+    /**
+     * Moves the prefetch window to the given index. Requests for items outside the new window are
+     * cancelled and the items inside it are queued by priority.
+     *
+     * @param centerIndex      The index of the showing item.
+     * @param direction        The direction of the last switch, 1 for next and -1 for previous.
+     * @param excludedDistance Items up to this distance are already loaded by the DraweeViews and
+     *                         are not prefetched.
+     */
+    public void update( int centerIndex, int direction, int excludedDistance )
+    {
+        update(centerIndex, direction, excludedDistance, false);
+    }
+
+    /**
+     * Moves the prefetch window to the given index, see {@link #update(int, int, int)}.
+     *
+     * @param predicted Whether the direction is predicted to continue. The window behind is then
+     *                  added to the window ahead, and nothing behind is prefetched.
+     */
+    public void update( int centerIndex, int direction, int excludedDistance, boolean predicted )
+    {
+        this.centerIndex = centerIndex;
+        this.direction = direction < 0 ? -1 : 1;
+        this.excludedDistance = excludedDistance;
+        int ahead = getPrefetchAhead();
+
+        this.windowAhead = predicted ? ahead + prefetchBehind : ahead;
+        this.windowBehind = predicted ? 0 : prefetchBehind;
+
+        refresh();
+    }
+
+    /**
+     * Returns the number of items to prefetch in the direction of the last switch, from the
+     * policy if there is one.
+     */
+    private int getPrefetchAhead()
+    {
+        if( policy == null )
+        {
+            return prefetchAhead;
+        }
+
+        policy.setItemBytes(imageSwitcher.estimateDecodedBytes());
+
+        return policy.getPrefetchDepth();
+    }
+
+    /**
+     * Cancels the requests outside the current window and queues the items inside it.
+     */
+    private void refresh()
+    {
+        if( !enabled || paused )
+        {
+            return;
+        }
+
+        // Freed request slots must not be handed back to this prefetcher while it is updating.
+        if( coordinator != null )
+        {
+            coordinator.removeWaiting(this);
+        }
+
+        // Cancel the requests for items that have fallen out of the window.
+        for( int i = inFlight.size() - 1; i >= 0; i-- )
+        {
+            int index = inFlight.keyAt(i);
+
+            if( !isInWindow(index) )
+            {
+                inFlight.valueAt(i).cancel();
+                inFlight.removeAt(i);
+                requestStats.onCancelled();
+
+                releaseBytes(index);
+                releaseRequest();
+            }
+        }
+
+        for( int i = finished.size() - 1; i >= 0; i-- )
+        {
+            int index = finished.keyAt(i);
+
+            if( !isInWindow(index) )
+            {
+                finished.removeAt(i);
+                releaseBytes(index);
+            }
+        }
+
+        // Queue the window, nearest first and the favoured direction before the other.
+        pending.clear();
+
+        int maxDistance = Math.max(windowAhead, windowBehind);
+        for( int distance = excludedDistance + 1; distance <= maxDistance; distance++ )
+        {
+            if( distance <= windowAhead )
+            {
+                queue(centerIndex + ( direction * distance ));
+            }
+
+            if( distance <= windowBehind )
+            {
+                queue(centerIndex - ( direction * distance ));
+            }
+        }
+
+        startPending();
+    }
+
+    /**
+     * Requests the image at the given index into the bitmap cache at the highest priority. The
+     * ImageLoaders merge identical requests, so this raises the priority of a DraweeView already
+     * loading it.
+     * Only one boost is kept, boosting another index replaces it.
+     */
+    public void boost( int index )
+    {
+        if( boostRequest != null && boostIndex == index )
+        {
+            return;
+        }
+
+        clearBoost();
+
+        Uri uri = imageSwitcher.getUri(index);
+
+        if( uri != null )
+        {
+            boostIndex = index;
+            boostRequest = imageSwitcher.prefetch(index, uri, ImageLoader.PRIORITY_HIGH, true, null);
+            requestStats.onIssued();
+        }
+    }
+
+    /**
+     * Cancels the boost, if any.
+     */
+    public void clearBoost()
+    {
+        if( boostRequest != null )
+        {
+            if( !boostRequest.isFinished() )
+            {
+                requestStats.onCancelled();
+            }
+            else if( boostRequest.hasFailed() )
+            {
+                requestStats.onFailed();
+            }
+            else
+            {
+                requestStats.onCompleted();
+            }
+
+            boostRequest.cancel();
+            boostRequest = null;
+        }
+    }
+
+    /**
+     * Cancels all the prefetch requests in flight, including the boost, and clears the queue.
+     */
+    public void cancelAll()
+    {
+        clearBoost();
+
+        if( coordinator != null )
+        {
+            coordinator.removeWaiting(this);
+        }
+
+        int cancelledCount = inFlight.size();
+
+        for( int i = 0; i < cancelledCount; i++ )
+        {
+            inFlight.valueAt(i).cancel();
+            requestStats.onCancelled();
+        }
+
+        inFlight.clear();
+        pending.clear();
+        finished.clear();
+
+        for( int i = reservedBytes.size() - 1; i >= 0; i-- )
+        {
+            releaseBytes(reservedBytes.keyAt(i));
+        }
+
+        for( int i = 0; i < cancelledCount; i++ )
+        {
+            releaseRequest();
+        }
+    }
+
+    /**
+     * Returns the number of prefetch requests currently in flight.
+     */
+    public int getInFlightCount()
+    {
+        return inFlight.size();
+    }
+
+    private boolean isInWindow( int index )
+    {
+        int distance = ( index - centerIndex ) * direction;
+
+        if( distance > 0 )
+        {
+            return distance > excludedDistance && distance <= windowAhead;
+        }
+        else
+        {
+            return -distance > excludedDistance && -distance <= windowBehind;
+        }
+    }
+
+    private void queue( int index )
+    {
+        if( inFlight.get(index) == null && !finished.get(index) && imageSwitcher.getUri(index) != null )
+        {
+            pending.add(index);
+        }
+    }
+
+    /**
+     * Called by the coordinator when a request slot has become available for this prefetcher.
+     */
+    void onRequestSlotAvailable()
+    {
+        if( enabled && !paused )
+        {
+            startPending();
+        }
+    }
+
+    /**
+     * Returns a boolean indicating whether the DraweeViews of this prefetcher are on screen.
+     */
+    boolean isOnScreen()
+    {
+        return imageSwitcher.isOnScreen();
+    }
+
+    private void startPending()
+    {
+        while( inFlight.size() < maxConcurrentRequests && !pending.isEmpty() )
+        {
+            int index = pending.get(0);
+            Uri uri = imageSwitcher.getUri(index);
+
+            if( uri == null )
+            {
+                pending.remove(0);
+                continue;
+            }
+
+            // Wait for a request slot of the shared budget, the coordinator calls back when free.
+            if( coordinator != null && !coordinator.acquireRequest(this) )
+            {
+                break;
+            }
+
+            pending.remove(0);
+
+            // Over the shared bitmap budget, the item is only prefetched to the disk cache.
+            boolean toMemory = Math.abs(index - centerIndex) <= bitmapCacheDistance && reserveBytes(index);
+
+            PrefetchCallback callback = new PrefetchCallback(index);
+            callback.request = imageSwitcher.prefetch(index, uri, ImageLoader.PRIORITY_LOW, toMemory, callback);
+
+            inFlight.put(index, callback.request);
+            requestStats.onIssued();
+        }
+    }
+
+    /**
+     * Called on the UI thread when a prefetch request has finished, successfully or not.
+     */
+    private void onPrefetchFinished( int index, ImageLoader.Request request, long startTime, boolean failed )
+    {
+        // The request might have been cancelled (and replaced) in the meantime.
+        if( inFlight.get(index) != request )
+        {
+            return;
+        }
+
+        inFlight.remove(index);
+
+        if( failed )
+        {
+            requestStats.onFailed();
+            releaseBytes(index);
+        }
+        else
+        {
+            requestStats.onCompleted();
+
+            // A prefetch that loaded nothing would pass for an instant load.
+            if( policy != null && !request.isSkipped() )
+            {
+                policy.onLoadFinished(SystemClock.uptimeMillis() - startTime);
+            }
+        }
+
+        finished.put(index, true);
+
+        releaseRequest();
+        startPending();
+    }
+
+    /**
+     * Reserves the estimated bitmap bytes of the given index with the coordinator.
+     *
+     * @return True if they were reserved (or there is no coordinator), false if over the budget.
+     */
+    private boolean reserveBytes( int index )
+    {
+        if( coordinator == null )
+        {
+            return true;
+        }
+
+        int bytes = imageSwitcher.estimateDecodedBytes();
+
+        if( !coordinator.reserveBitmapBytes(bytes) )
+        {
+            return false;
+        }
+
+        reservedBytes.put(index, bytes);
+        return true;
+    }
+
+    private void releaseBytes( int index )
+    {
+        int bytes = reservedBytes.get(index);
+
+        if( bytes > 0 )
+        {
+            reservedBytes.delete(index);
+
+            if( coordinator != null )
+            {
+                coordinator.releaseBitmapBytes(bytes);
+            }
+        }
+    }
+
+    private void releaseRequest()
+    {
+        if( coordinator != null )
+        {
+            coordinator.releaseRequest();
+        }
+    }
+
+    /**
+     * Receives the result of a single prefetch request, always on the UI thread.
+     */
+    private final class PrefetchCallback implements ImageLoader.Callback
+    {
+        private final int  index;
+        // The time the request was issued.
+        private final long startTime = SystemClock.uptimeMillis();
+
+        // Set right after the request is issued, its callbacks are never called before that.
+        private ImageLoader.Request request;
+
+        public PrefetchCallback( int index )
+        {
+            this.index = index;
+        }
+
+        @Override
+        public void onSubmit()
+        {
+        }
+
+        @Override
+        public void onCompleted()
+        {
+            onPrefetchFinished(index, request, startTime, false);
+        }
+
+        @Override
+        public void onFailed()
+        {
+            onPrefetchFinished(index, request, startTime, true);
+        }
+
+        @Override
+        public void onRelease()
+        {
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package pt.nmusic.imageswitcher;
+
+import android.net.Uri;
+
+/**
+ * The source of the image Uris an {@link ImageSwitcher} switches between.
+ * <p/>
+ * A source does not have to hold all its Uris in memory. {@link #get(int)} must never block, and
+ * may return null for an item that is not loaded yet. The source should then load it in the
+ * background and tell its {@link Listener} once it is available.
+ * <p/>
+ * All the functions are called on the UI thread.
+ */
+public interface ImageSource
+{
+    /**
+     * Returns the number of items currently known to the source. This can grow as more items are
+     * loaded.
+     */
+    int size();
+
+    /**
+     * Returns the Uri at the given index, or null if the item is not loaded (yet).
+     */
+    Uri get( int index );
+
+    /**
+     * Returns the Uri of a small, cheap version of the image at the given index, or null if there
+     * is none (or it is not loaded yet). It is shown while the full image loads.
+     */
+    Uri getThumbnail( int index );
+
+    /**
+     * A hint that the item at the given index will soon be needed. Sources that load their items
+     * lazily should start loading it (and any items around it) in the background.
+     */
+    void request( int index );
+
+    /**
+     * Sets the Listener that is told when items have been loaded. Can be null.
+     */
+    void setListener( Listener listener );
+
+    /**
+     * Notified (on the UI thread) when items have been loaded, or the size of the source changed.
+     */
+    interface Listener
+    {
+        /**
+         * @param fromIndex The index of the first loaded item.
+         * @param count     The number of loaded items.
+         */
+        void onItemsLoaded( int fromIndex, int count );
+    }
+}
@@ -1,30 +1,157 @@
 package pt.nmusic.imageswitcher;
 
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.DisplayMetrics;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.widget.ImageView;
 
-import com.facebook.drawee.backends.pipeline.Fresco;
-import com.facebook.drawee.interfaces.DraweeController;
 import com.facebook.drawee.view.DraweeView;
-import com.facebook.imagepipeline.request.ImageRequest;
-import com.facebook.imagepipeline.request.ImageRequestBuilder;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 
 /**
  * This is convenience implementation of the Switcher class for handling the desire to display
  * and switch between Images, shown in Fresco DraweeViews.
  * <p/>
+ * The images are loaded through an {@link ImageLoader}, a {@link FrescoImageLoader} unless another
+ * one is given. Apps that only show local images can use a {@link BitmapImageLoader} with plain
+ * ImageViews instead, and do without Fresco.
+ * <p/>
+ * While its DraweeViews are attached to a window it is registered with the Application for
+ * {@link ComponentCallbacks2}, and releases the images of the DraweeViews that are not showing
+ * when the system is low on memory. It is unregistered again once they are all detached, so it
+ * need not (and should not) be registered by hand.
+ * <p/>
+ * With a {@link ThumbnailStore}, DraweeViews show a stored preview of their image until it has
+ * loaded, also right after a cold start.
+ * <p/>
+ * The prefetching is paused while the DraweeViews are detached from the window or scrolled off
+ * screen, and shares its budget with all the other ImageSwitchers through the
+ * {@link SwitcherCoordinator}.
+ * <p/>
  * Created by bam on 14/11/15.
  */
-public class ImageSwitcher implements Switcher
+public class ImageSwitcher implements SeekableSwitcher, SwipeObserver, ComponentCallbacks2
 {
-    private ArrayList<Uri> imageUri;
-    public  ViewTracker    viewTracker;
+    // The time after an image has loaded that its preview is captured.
+    private static final long PREVIEW_CAPTURE_DELAY_MS = 500;
 
+    private ImageSource     imageSource;
+    public  ViewTracker     viewTracker;
+    private ImagePrefetcher prefetcher;
+    private ImageLoader     imageLoader;
+
+    // The position of the showing item. In wrap-around mode this keeps counting past the ends of
+    // the ImageSource, and the item index is the position modulo the size of the ImageSource.
     private int currentIndex = 0;
+    private boolean wrapAround = false;
+    // The direction of the last switch, 1 for next and -1 for previous.
+    private int lastDirection = 1;
+
+    // Predicts the browsing direction, to favour the images in that direction.
+    private final DirectionPredictor directionPredictor = new DirectionPredictor();
+    private boolean directionPrediction = true;
+    // The fraction of the switch distance a drag has to pass to boost the incoming image.
+    private float   boostFraction       = 0.5f;
+    // The speed of the last swipe (in screen widths per second), until its switch is recorded.
+    private float   swipeSpeed          = 0;
 
     // The Image that will be used as a placeholder for the DraweeViews.
     private int imagePlaceholder = R.drawable.image_placeholder;
+    // Provides the dominant colours of the items, for their placeholders. Can be null.
+    private PlaceholderColors placeholderColors;
+
+    // The Uri currently bound to each DraweeView. A null value means the placeholder is bound,
+    // while a missing key means the content of the DraweeView is unknown.
+    private final HashMap<View, Uri> boundUris = new HashMap<View, Uri>();
+
+    // The Callback of each DraweeView, re-used for every image bound to it.
+    private final HashMap<View, SlotCallback> slotCallbacks = new HashMap<View, SlotCallback>();
+
+    private SwitchMetricsListener metricsListener;
+
+    // Stores the previews of the images shown, can be null.
+    private ThumbnailStore thumbnailStore;
+    // The DraweeViews showing a preview as their background until their image has loaded.
+    private final HashSet<View> previewViews = new HashSet<View>();
+    // Captures the previews of the images that have loaded, a while after they have.
+    private final Handler  uiHandler = new Handler(Looper.getMainLooper());
+    private final Canvas   previewCanvas = new Canvas();
+    private boolean        previewCapturePosted = false;
+    private final Runnable previewCapture = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            previewCapturePosted = false;
+            capturePreviews();
+        }
+    };
+
+    // Counts the requests issued for the DraweeViews and the prefetches.
+    private final RequestStats requestStats = new RequestStats();
+
+    // A boolean indicating whether the DraweeViews that are not showing have been released
+    // because of memory pressure, and need to be prepared again on the next swipe.
+    private boolean viewsReleased = false;
+    // A boolean indicating whether a swipe is in progress, from its start until the Views have
+    // settled, and whether the neighbours are to be released once they have.
+    private boolean swiping                 = false;
+    private boolean neighbourReleasePending = false;
+
+    // A boolean indicating whether the images are decoded at (about) the size of the DraweeViews.
+    private boolean      resizeEnabled = true;
+    private ResizeFilter resizeFilter;
+    // The size the images are decoded at, the last known DraweeView size.
+    private int decodeWidth;
+    private int decodeHeight;
+
+    // Binds the neighbours after the first frame of a deferred start, until it has run.
+    private StartListener pendingStart;
+
+    // Re-used to find out whether the DraweeViews are on screen.
+    private final Rect visibleRect = new Rect();
+    // Pauses the prefetching while the DraweeViews are detached or off screen.
+    private final VisibilityListener visibilityListener = new VisibilityListener();
+
+    /**
+     * Decides, per item, whether its image is decoded at the size of the DraweeViews.
+     */
+    public interface ResizeFilter
+    {
+        /**
+         * @return True to decode the image at the size of the DraweeViews, false to decode it at
+         * its full size (for example for images the user can zoom into).
+         */
+        boolean shouldResize( int index, Uri uri );
+    }
+
+    /**
+     * Provides the dominant colour of the items, for example from the metadata of a server, to
+     * show as their placeholder while their Uri is not loaded yet.
+     */
+    public interface PlaceholderColors
+    {
+        /**
+         * @return The dominant colour of the item, or {@link Color#TRANSPARENT} if it is not known.
+         */
+        int getPlaceholderColor( int index );
+    }
 
 
     /**
@@ -34,19 +161,285 @@ public class ImageSwitcher implements Switcher
      * @param imageUri
      */
     public ImageSwitcher( ArrayList<Uri> imageUri, DraweeView imageA, DraweeView imageB, DraweeView imageC )
+    {
+        this(imageUri, new DraweeView[]{ imageA, imageB, imageC });
+    }
+
+    /**
+     * Constructor for the class that takes an ArrayList of Uri (pointing to the desired
+     * swipe images) and an odd number (three or more) of DraweeViews that will be used to rotate
+     * through images. With five or seven DraweeViews the +/-2 or +/-3 images are kept loaded
+     * ahead of the user, so rapid consecutive switches land on already loaded images.
+     * <p/>
+     * The DraweeView in the middle of the array is the one showing, see
+     * {@link ViewTracker#ViewTracker(View[], View)}.
+     *
+     * @param imageUri
+     * @param images
+     */
+    public ImageSwitcher( ArrayList<Uri> imageUri, DraweeView[] images )
+    {
+        this(toImageSource(imageUri), images);
+    }
+
+    /**
+     * Constructor for the class that takes an ImageSource (providing the desired swipe images)
+     * and an odd number (three or more) of DraweeViews that will be used to rotate through images.
+     * <p/>
+     * The ImageSource does not need to hold all its Uris in memory, see {@link CursorImageSource}
+     * and {@link PagedImageSource}. DraweeViews whose item is not loaded yet show the placeholder
+     * until the ImageSource reports it as loaded.
+     *
+     * @param imageSource
+     * @param images
+     */
+    public ImageSwitcher( ImageSource imageSource, DraweeView[] images )
+    {
+        this(imageSource, images, new FrescoImageLoader());
+    }
+
+    /**
+     * Constructor for the class that takes an ImageSource (providing the desired swipe images),
+     * an odd number (three or more) of ImageViews that will be used to rotate through images and
+     * the ImageLoader that loads the images into them.
+     * <p/>
+     * The ImageViews must be of the kind the ImageLoader loads into, DraweeViews for a
+     * {@link FrescoImageLoader}.
+     *
+     * @param imageSource
+     * @param images
+     * @param imageLoader
+     */
+    public ImageSwitcher( ImageSource imageSource, ImageView[] images, ImageLoader imageLoader )
+    {
+        if( imageSource == null )
+        {
+            throw new IllegalArgumentException("Given ImageSource was null! Error!");
+        }
+
+        if( images == null || images.length < 3 || images.length % 2 == 0 )
+        {
+            throw new IllegalArgumentException("Given DraweeViews were invalid! Error!");
+        }
+
+        for( ImageView image : images )
+        {
+            if( image == null )
+            {
+                throw new IllegalArgumentException("Given DraweeViews were invalid! Error!");
+            }
+        }
+
+        if( imageLoader == null )
+        {
+            throw new IllegalArgumentException("Given ImageLoader was null! Error!");
+        }
+
+        this.imageSource = imageSource;
+        this.imageLoader = imageLoader;
+        this.viewTracker = new ViewTracker(images, null);
+        this.prefetcher = new ImagePrefetcher(this);
+
+        this.imageSource.setListener(new ImageSource.Listener()
+        {
+            @Override
+            public void onItemsLoaded( int fromIndex, int count )
+            {
+                refreshPlaceholderViews();
+            }
+        });
+        this.imageSource.request(currentIndex);
+
+        // The DraweeViews need not share a parent, so each of them is followed.
+        for( int position = 0; position < this.viewTracker.getSlotCount(); position++ )
+        {
+            View slot = this.viewTracker.getSlot(position);
+
+            slot.addOnAttachStateChangeListener(visibilityListener);
+
+            if( slot.getWindowToken() != null )
+            {
+                visibilityListener.onViewAttachedToWindow(slot);
+            }
+        }
+
+        // Nothing is prefetched until the DraweeViews are on screen.
+        visibilityListener.update();
+    }
+
+    private static ImageSource toImageSource( ArrayList<Uri> imageUri )
     {
         if( imageUri == null || imageUri.size() < 1 )
         {
             throw new IllegalArgumentException("Given Uri ArrayList was null! Error!");
         }
 
-        if( imageA == null || imageB == null || imageC == null )
+        return new ListImageSource(imageUri);
+    }
+
+    /**
+     * Returns the ImageSource providing the images.
+     */
+    public ImageSource getImageSource()
+    {
+        return imageSource;
+    }
+
+    /**
+     * Returns the ImageLoader that loads the images into the DraweeViews and prefetches them.
+     */
+    public ImageLoader getImageLoader()
+    {
+        return imageLoader;
+    }
+
+    /**
+     * Returns the ImagePrefetcher that prefetches the images outside the tracked DraweeViews, so
+     * its window and request budget can be configured.
+     */
+    public ImagePrefetcher getPrefetcher()
+    {
+        return prefetcher;
+    }
+
+    /**
+     * Returns the RequestStats counting the image requests issued, completed and cancelled.
+     */
+    public RequestStats getRequestStats()
+    {
+        return requestStats;
+    }
+
+    /*******************
+     * CONFIGURATION
+     *******************/
+
+    /**
+     * Sets whether the images should be decoded at (about) the size of the DraweeViews instead of
+     * at their full size. This is enabled by default, and saves both memory and decode time for
+     * images larger than the screen.
+     * <p/>
+     * NOTE: With the {@link FrescoImageLoader}, other formats than JPEG are only resized when
+     * downsampling is enabled in Fresco's ImagePipelineConfig.
+     */
+    public void setResizeEnabled( boolean resizeEnabled )
+    {
+        this.resizeEnabled = resizeEnabled;
+        invalidateViews();
+    }
+
+    /**
+     * Sets the SwitchMetricsListener that receives the time from each DraweeView being prepared
+     * until its final image was set. Can be null to stop measuring.
+     */
+    public void setMetricsListener( SwitchMetricsListener metricsListener )
+    {
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * Sets a ResizeFilter that can opt single items out of the resizing. Can be null.
+     */
+    public void setResizeFilter( ResizeFilter resizeFilter )
+    {
+        this.resizeFilter = resizeFilter;
+        invalidateViews();
+    }
+
+    /**
+     * Sets the drawable resource shown in the DraweeViews that have no item (at the ends of the
+     * list) or whose item is not loaded yet. It is decoded once, at the size of the DraweeViews,
+     * and shared by all the ImageSwitchers through the {@link PlaceholderProvider}.
+     */
+    public void setImagePlaceholder( int imagePlaceholder )
+    {
+        this.imagePlaceholder = imagePlaceholder;
+        rebindPlaceholderViews();
+    }
+
+    /**
+     * Sets the PlaceholderColors providing the dominant colour of the items. Items whose Uri is
+     * not loaded yet then show a placeholder of their colour instead of the placeholder image.
+     * Can be null.
+     */
+    public void setPlaceholderColors( PlaceholderColors placeholderColors )
+    {
+        this.placeholderColors = placeholderColors;
+        rebindPlaceholderViews();
+    }
+
+    /**
+     * Sets the ThumbnailStore the previews of the images are stored in and shown from. Can be
+     * null to not use previews.
+     * <p/>
+     * The preview of an image is stored once, a while after it has loaded (so not during the
+     * switch that brings it on screen), or when the DraweeViews are detached. DraweeViews with a
+     * background of their own do not show previews.
+     */
+    public void setThumbnailStore( ThumbnailStore thumbnailStore )
+    {
+        this.thumbnailStore = thumbnailStore;
+    }
+
+    /**
+     * Returns the DirectionPredictor that predicts the browsing direction, so it can be configured.
+     */
+    public DirectionPredictor getDirectionPredictor()
+    {
+        return directionPredictor;
+    }
+
+    /**
+     * Sets whether the images in the predicted browsing direction are favoured. This is enabled
+     * by default. The nearest DraweeView in the predicted direction is then loaded at a higher
+     * priority and the ones in the opposite direction at a lower priority, and the prefetching
+     * only looks ahead.
+     */
+    public void setDirectionPrediction( boolean directionPrediction )
+    {
+        this.directionPrediction = directionPrediction;
+    }
+
+    /**
+     * Sets the fraction of the switch distance (see {@link SwitchListener#setSwitchPercentage})
+     * a drag has to pass before the image it drags in is loaded at the highest priority. Zero or
+     * less disables this.
+     */
+    public void setBoostFraction( float boostFraction )
+    {
+        this.boostFraction = boostFraction;
+    }
+
+    /**
+     * Sets whether the items wrap around, so the first item follows the last one and the user can
+     * switch endlessly in both directions. The DraweeViews and the prefetching continue across the
+     * seam as anywhere else. This needs an ImageSource of at least two items and with a known
+     * size.
+     */
+    public void setWrapAround( boolean wrapAround )
+    {
+        if( this.wrapAround == wrapAround )
         {
-            throw new IllegalArgumentException("Given DraweeViews were invalid! Error!");
+            return;
         }
 
-        this.imageUri = imageUri;
-        this.viewTracker = new ViewTracker(imageA, imageB, imageC);
+        currentIndex = toItemIndex(currentIndex);
+        this.wrapAround = wrapAround;
+
+        // The items next to the ends change.
+        prepareView(0);
+        prepareNextView(false);
+        preparePreviousView(false);
+        updatePrefetcher();
+    }
+
+    /**
+     * Returns the index of the showing item.
+     */
+    @Override
+    public int getCurrentIndex()
+    {
+        return toItemIndex(currentIndex);
     }
 
     /**
@@ -55,17 +448,7 @@ public class ImageSwitcher implements Switcher
     @Override
     public boolean hasNext()
     {
-        int nextIndex = ( currentIndex + 1 );
-
-        // If invalid index position, return false.
-        if( nextIndex < 0 && nextIndex >= imageUri.size() )
-        {
-            return false;
-        }
-        else
-        {
-            return imageUri.get(nextIndex) != null;
-        }
+        return hasPosition(currentIndex + 1);
     }
 
     /**
@@ -74,17 +457,7 @@ public class ImageSwitcher implements Switcher
     @Override
     public boolean hasPrevious()
     {
-        int previousIndex = ( currentIndex - 1 );
-
-        // If invalid index position, return false.
-        if( previousIndex < 0 && previousIndex >= imageUri.size() )
-        {
-            return false;
-        }
-        else
-        {
-            return imageUri.get(previousIndex) != null;
-        }
+        return hasPosition(currentIndex - 1);
     }
 
     /**
@@ -107,6 +480,8 @@ public class ImageSwitcher implements Switcher
         currentIndex = currentIndex + 1;
 
         // No other actions needed here as the PrepareNext() takes care of preparing the DraweeView.
+        lastDirection = 1;
+        onSwitch(userInitiated);
 
         return true;
     }
@@ -131,6 +506,127 @@ public class ImageSwitcher implements Switcher
         currentIndex = currentIndex - 1;
 
         // No other actions needed here as the PreparePrevious() takes care of preparing the DraweeView.
+        lastDirection = -1;
+        onSwitch(userInitiated);
+
+        return true;
+    }
+
+    /**
+     * Jumps directly to the given item. All the DraweeViews are bound to their new items in one
+     * go, the Showing DraweeView first and then the others nearest first, and the prefetching is
+     * moved to the new index.
+     * <p/>
+     * Use {@link SwitchListener#seekTo(int, boolean)} to seek while the SwitchListener is in use,
+     * so running animations are finished first.
+     *
+     * In wrap-around mode any index is accepted (and taken modulo the number of items), and the
+     * item is reached the shortest way around.
+     *
+     * @param index         The index of the item to show.
+     * @param userInitiated A boolean indicating whether the function has been called because of a
+     *                      user performed action or called by the system in some other way.
+     */
+    @Override
+    public boolean seekAction( int index, boolean userInitiated )
+    {
+        int position = currentIndex + getSeekDistance(index);
+
+        if( position != currentIndex )
+        {
+            lastDirection = position > currentIndex ? 1 : -1;
+        }
+
+        currentIndex = position;
+
+        cancelPendingStart();
+        prefetcher.clearBoost();
+        cancelOutsideWindow();
+
+        // The Showing DraweeView first, then the others.
+        prepareView(0);
+        prepareNeighbours();
+
+        return true;
+    }
+
+    /**
+     * Binds the DraweeViews to the given item and its neighbours, see {@link #start(int, boolean)}.
+     * The neighbours are bound right away.
+     */
+    public void start( int initialIndex )
+    {
+        start(initialIndex, false);
+    }
+
+    /**
+     * Binds the Showing DraweeView to the given item at the highest priority, then the other
+     * DraweeViews to its neighbours (nearest first) and starts prefetching around it. Call this
+     * once the DraweeViews are set up, so the first image starts loading right away and the
+     * first swipes land on images that have already loaded.
+     *
+     * @param initialIndex    The index of the item to show.
+     * @param deferNeighbours Whether to bind the neighbours only after the first frame has been
+     *                        drawn, so their decoding does not compete with the Showing
+     *                        DraweeView before it. A swipe binds them right away.
+     */
+    public void start( int initialIndex, boolean deferNeighbours )
+    {
+        if( !isWrapping() && !hasItem(initialIndex) )
+        {
+            throw new IllegalArgumentException("Given index " + initialIndex + " was out of bounds! Error!");
+        }
+
+        currentIndex = toItemIndex(initialIndex);
+
+        cancelPendingStart();
+        prefetcher.clearBoost();
+        cancelOutsideWindow();
+
+        prepareView(0);
+
+        if( deferNeighbours )
+        {
+            pendingStart = new StartListener(viewTracker.getShowingImage());
+            pendingStart.view.getViewTreeObserver().addOnPreDrawListener(pendingStart);
+        }
+        else
+        {
+            prepareNeighbours();
+        }
+    }
+
+    /**
+     * Prepares all the DraweeViews except the Showing one, nearest first (and the favoured
+     * direction first), and moves the prefetch window.
+     */
+    private void prepareNeighbours()
+    {
+        int direction = getPredictedDirection() != 0 ? getPredictedDirection() : lastDirection;
+
+        for( int offset = 1; offset <= viewTracker.getRadius(); offset++ )
+        {
+            prepareView(direction * offset);
+            prepareView(-direction * offset);
+        }
+
+        updatePrefetcher();
+    }
+
+    /**
+     * Cancels the deferred binding of the neighbours of a start, if it has not run yet.
+     *
+     * @return True if it was cancelled, else false.
+     */
+    private boolean cancelPendingStart()
+    {
+        if( pendingStart == null )
+        {
+            return false;
+        }
+
+        pendingStart.remove();
+        pendingStart = null;
 
         return true;
     }
@@ -140,6 +636,8 @@ public class ImageSwitcher implements Switcher
      * This action is performed any time a switch takes place, but after the
      * {@link ViewTracker#switchNext()} or {@link ViewTracker#switchPrevious()}, so it can perform
      * the prepare action on the correct View.
+     * <p/>
+     * When the ViewTracker holds more than three DraweeViews, all the Next DraweeViews are prepared.
      *
      * @param userInitiated A boolean indicating whether the function has been called because of a
      *                      user performed action or called by the system in some other way.
@@ -148,28 +646,11 @@ public class ImageSwitcher implements Switcher
     @Override
     public boolean prepareNextView( boolean userInitiated )
     {
-        // This will return the next Uri is there exists one.
-        if( hasNext() )
-        {
-            Uri nextUri = imageUri.get(currentIndex + 1);
-
-            DraweeView nextDrawee = (DraweeView) viewTracker.getNextImage();
-
-            ImageRequest request = ImageRequestBuilder
-                    .newBuilderWithSource(nextUri)
-                    .setProgressiveRenderingEnabled(true)
-                    .build();
-            DraweeController controller = Fresco.newDraweeControllerBuilder()
-                    .setImageRequest(request)
-                    .setOldController(nextDrawee.getController())
-                    .build();
+        updateShowingView();
 
-            nextDrawee.setController(controller);
-        }
-        else // If no Uri is retrieved, the Next DraweeView source has to be set to null.
+        for( int offset = 1; offset <= viewTracker.getRadius(); offset++ )
         {
-            DraweeView nextDrawee = (DraweeView) viewTracker.getNextImage();
-            nextDrawee.setImageResource(imagePlaceholder);
+            prepareView(offset);
         }
 
         return true;
@@ -180,6 +661,9 @@ public class ImageSwitcher implements Switcher
      * This action is performed any time a switch takes place, but after the
      * {@link ViewTracker#switchNext()} or {@link ViewTracker#switchPrevious()}, so it can perform
      * the prepare action on the correct View.
+     * <p/>
+     * When the ViewTracker holds more than three DraweeViews, all the Previous DraweeViews are
+     * prepared.
      *
      * @param userInitiated A boolean indicating whether the function has been called because of a
      *                      user performed action or called by the system in some other way.
@@ -188,30 +672,996 @@ public class ImageSwitcher implements Switcher
     @Override
     public boolean preparePreviousView( boolean userInitiated )
     {
-        // This will return the next Uri is there exists one.
-        if( hasPrevious() )
+        updateShowingView();
+
+        for( int offset = 1; offset <= viewTracker.getRadius(); offset++ )
         {
-            Uri nextUri = imageUri.get(currentIndex - 1);
+            prepareView(-offset);
+        }
 
-            DraweeView nextDrawee = (DraweeView) viewTracker.getPreviousImage();
+        return true;
+    }
 
-            ImageRequest request = ImageRequestBuilder
-                    .newBuilderWithSource(nextUri)
-                    .setProgressiveRenderingEnabled(true)
-                    .build();
-            DraweeController controller = Fresco.newDraweeControllerBuilder()
-                    .setImageRequest(request)
-                    .setOldController(nextDrawee.getController())
-                    .build();
+    /*******************
+     * SWIPE OBSERVER
+     *******************/
+
+    /**
+     * Prepares the DraweeViews again if they were released because of memory pressure.
+     */
+    @Override
+    public void onSwipeStarted()
+    {
+        swiping = true;
 
-            nextDrawee.setController(controller);
+        // The user is swiping before the first frame, the neighbours are needed now.
+        if( cancelPendingStart() )
+        {
+            prepareNeighbours();
         }
-        else // If no Uri is retrieved, the Previous DraweeView source has to be set to null.
+
+        if( viewsReleased )
         {
-            DraweeView nextDrawee = (DraweeView) viewTracker.getPreviousImage();
-            nextDrawee.setImageResource(imagePlaceholder);
+            viewsReleased = false;
+
+            prepareNextView(true);
+            preparePreviousView(true);
+            updatePrefetcher();
         }
+    }
 
-        return true;
+    /**
+     * Boosts the image being dragged in, once the drag has passed the boost fraction.
+     */
+    @Override
+    public void onSwipeProgress( float progress )
+    {
+        if( boostFraction > 0 && Math.abs(progress) >= boostFraction )
+        {
+            prefetcher.boost(currentIndex + ( progress > 0 ? 1 : -1 ));
+        }
+    }
+
+    @Override
+    public void onSwipeEnded( boolean switched, float speed )
+    {
+        if( switched )
+        {
+            // Recorded with the switch, at the end of the switch animation.
+            swipeSpeed = speed;
+        }
+        else
+        {
+            prefetcher.clearBoost();
+        }
+    }
+
+    /**
+     * Releases the neighbours of the showing DraweeView, if memory pressure arrived while they
+     * were on screen.
+     */
+    @Override
+    public void onSettled()
+    {
+        swiping = false;
+
+        if( neighbourReleasePending )
+        {
+            neighbourReleasePending = false;
+            releaseViews();
+        }
+    }
+
+    /*******************
+     * MEMORY
+     *******************/
+
+    /**
+     * Releases images according to the given trim level. While the app is running, or hidden, the
+     * prefetches are cancelled and the DraweeViews that are not showing are released. At the
+     * critical levels, the memory caches of the ImageLoader and the shared placeholders are
+     * cleared as well so only the showing image is kept. Everything released is loaded again on
+     * the next swipe.
+     */
+    @Override
+    public void onTrimMemory( int level )
+    {
+        if( level >= TRIM_MEMORY_COMPLETE || level == TRIM_MEMORY_RUNNING_CRITICAL )
+        {
+            releaseViews();
+            imageLoader.clearMemoryCaches();
+            PlaceholderProvider.getInstance().clear();
+        }
+        else if( level >= TRIM_MEMORY_RUNNING_MODERATE )
+        {
+            // Also cancels the prefetches.
+            releaseViews();
+        }
+    }
+
+    @Override
+    public void onLowMemory()
+    {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged( Configuration newConfig )
+    {
+    }
+
+    /**
+     * Cancels all prefetches and releases the images of all the DraweeViews except the showing one.
+     * During a swipe the neighbours of the showing DraweeView are on screen, so they are only
+     * released once the swipe has settled.
+     */
+    private void releaseViews()
+    {
+        prefetcher.cancelAll();
+
+        int radius = viewTracker.getRadius();
+
+        for( int offset = -radius; offset <= radius; offset++ )
+        {
+            if( swiping && Math.abs(offset) == 1 )
+            {
+                neighbourReleasePending = true;
+            }
+            else if( offset != 0 )
+            {
+                ImageView drawee = (ImageView) viewTracker.getImage(offset);
+
+                releaseView(drawee);
+                boundUris.remove(drawee);
+            }
+        }
+
+        viewsReleased = true;
+    }
+
+    /**
+     * Records the switch (in the lastDirection) with the DirectionPredictor, and moves the
+     * prefetch window.
+     */
+    private void onSwitch( boolean userInitiated )
+    {
+        PrefetchPolicy policy = prefetcher.getPolicy();
+
+        if( policy != null )
+        {
+            // Not rotated yet, the DraweeView coming on screen is still at the offset of the switch.
+            SlotCallback slotCallback = slotCallbacks.get(viewTracker.getImage(lastDirection));
+
+            policy.onSwitch(SystemClock.uptimeMillis());
+            policy.onItemShown(slotCallback != null && slotCallback.completed);
+        }
+
+        cancelPendingStart();
+        cancelOutsideWindow();
+
+        directionPredictor.onSwitch(lastDirection, userInitiated ? swipeSpeed : 0, SystemClock.uptimeMillis());
+        swipeSpeed = 0;
+
+        prefetcher.clearBoost();
+        updatePrefetcher();
+    }
+
+    /**
+     * Releases the DraweeViews still loading an item that is no longer within the radius of the
+     * current index, so the request does not compete with the items the user is looking at.
+     */
+    private void cancelOutsideWindow()
+    {
+        int radius = viewTracker.getRadius();
+
+        for( int position = 0; position < viewTracker.getSlotCount(); position++ )
+        {
+            View view = viewTracker.getSlot(position);
+            SlotCallback slotCallback = slotCallbacks.get(view);
+
+            if( slotCallback != null && slotCallback.inFlight && Math.abs(slotCallback.index - currentIndex) > radius )
+            {
+                releaseView((ImageView) view);
+                boundUris.remove(view);
+            }
+        }
+    }
+
+    /**
+     * Moves the prefetch window to the current index, towards the predicted direction if there is
+     * one, else towards the direction of the last switch.
+     */
+    private void updatePrefetcher()
+    {
+        int predictedDirection = getPredictedDirection();
+
+        if( predictedDirection != 0 )
+        {
+            prefetcher.update(currentIndex, predictedDirection, viewTracker.getRadius(), true);
+        }
+        else
+        {
+            prefetcher.update(currentIndex, lastDirection, viewTracker.getRadius());
+        }
+    }
+
+    /**
+     * Returns the predicted direction, or 0 if there is none (or prediction is disabled).
+     */
+    private int getPredictedDirection()
+    {
+        return directionPrediction ? directionPredictor.getPredictedDirection() : 0;
+    }
+
+    /**
+     * Returns the priority for loading the DraweeView at the given offset. The Showing DraweeView
+     * is loaded first. With a predicted direction, the nearest DraweeView in that direction is
+     * loaded next and the ones in the opposite direction last.
+     */
+    private int getSlotPriority( int offset )
+    {
+        int predictedDirection = getPredictedDirection();
+
+        if( offset == 0 )
+        {
+            return ImageLoader.PRIORITY_HIGH;
+        }
+
+        if( predictedDirection == 0 )
+        {
+            return ImageLoader.PRIORITY_MEDIUM;
+        }
+
+        if( ( offset > 0 ) != ( predictedDirection > 0 ) )
+        {
+            return ImageLoader.PRIORITY_LOW;
+        }
+
+        return Math.abs(offset) == 1 ? ImageLoader.PRIORITY_HIGH : ImageLoader.PRIORITY_MEDIUM;
+    }
+
+    /**
+     * Returns a boolean indicating whether there is an item at the given index.
+     */
+    @Override
+    public boolean hasItem( int index )
+    {
+        // If invalid index position, return false. The item itself may not be loaded yet.
+        return index >= 0 && index < imageSource.size();
+    }
+
+    /**
+     * Returns the number of switches from the showing item to the item at the given index. In
+     * wrap-around mode any index is accepted, and the item is reached the shortest way around.
+     */
+    @Override
+    public int getSeekDistance( int index )
+    {
+        if( !isWrapping() )
+        {
+            if( !hasItem(index) )
+            {
+                throw new IllegalArgumentException("Given index " + index + " was out of bounds! Error!");
+            }
+
+            return index - currentIndex;
+        }
+
+        int size = imageSource.size();
+        int distance = toItemIndex(index) - toItemIndex(currentIndex);
+
+        // The shortest way around.
+        distance = ( ( distance % size ) + size ) % size;
+        if( distance > size / 2 )
+        {
+            distance -= size;
+        }
+
+        return distance;
+    }
+
+    /**
+     * Returns a boolean indicating whether the items wrap around (and there are enough of them).
+     */
+    private boolean isWrapping()
+    {
+        return wrapAround && imageSource.size() > 1;
+    }
+
+    /**
+     * Returns a boolean indicating whether there is an item at the given position, which in
+     * wrap-around mode is always the case.
+     */
+    private boolean hasPosition( int position )
+    {
+        return isWrapping() || hasItem(position);
+    }
+
+    /**
+     * Returns the index of the item at the given position.
+     */
+    private int toItemIndex( int position )
+    {
+        if( !isWrapping() )
+        {
+            return position;
+        }
+
+        int size = imageSource.size();
+
+        return ( ( position % size ) + size ) % size;
+    }
+
+    /**
+     * Forgets which image each DraweeView holds, so the next prepare actions re-bind all of them.
+     * Call this after changing the content of the DraweeViews, or the Uris, outside this class.
+     */
+    public void invalidateViews()
+    {
+        boundUris.clear();
+    }
+
+    /**
+     * Returns the Uri at the given position, or null if there is no item at the position.
+     */
+    Uri getUri( int index )
+    {
+        return hasPosition(index) ? imageSource.get(toItemIndex(index)) : null;
+    }
+
+    /**
+     * Prefetches the image at the given position through the ImageLoader, at the same size the
+     * DraweeViews load it at, so the prefetched images match the cache entries of the loaded ones.
+     */
+    ImageLoader.Request prefetch( int index, Uri uri, int priority, boolean toMemory, ImageLoader.Callback callback )
+    {
+        boolean resize = shouldResize(index, uri);
+
+        return imageLoader.prefetch(uri, resize ? decodeWidth : 0, resize ? decodeHeight : 0, priority, toMemory, callback);
+    }
+
+    /**
+     * Returns the estimated bytes of a decoded image, at the size of the DraweeViews.
+     */
+    int estimateDecodedBytes()
+    {
+        updateDecodeSize();
+
+        // ARGB_8888
+        return decodeWidth * decodeHeight * 4;
+    }
+
+    /**
+     * Returns a boolean indicating whether the Showing DraweeView is (at least partly) on screen.
+     */
+    boolean isOnScreen()
+    {
+        View showing = viewTracker.getShowingImage();
+
+        return showing.isShown() && showing.getGlobalVisibleRect(visibleRect);
+    }
+
+    /**
+     * Returns a boolean indicating whether the image at the given position is decoded at the size
+     * of the DraweeViews, and if so updates that size.
+     */
+    private boolean shouldResize( int index, Uri uri )
+    {
+        if( resizeEnabled && ( resizeFilter == null || resizeFilter.shouldResize(toItemIndex(index), uri) ) )
+        {
+            updateDecodeSize();
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Updates the decode size to the size of the DraweeViews. Before they have been measured, the
+     * size of the screen is used instead.
+     */
+    private void updateDecodeSize()
+    {
+        View showing = viewTracker.getShowingImage();
+
+        int width = showing.getWidth();
+        int height = showing.getHeight();
+
+        if( width <= 0 || height <= 0 )
+        {
+            DisplayMetrics metrics = showing.getResources().getDisplayMetrics();
+
+            width = metrics.widthPixels;
+            height = metrics.heightPixels;
+        }
+
+        decodeWidth = width;
+        decodeHeight = height;
+    }
+
+    /**
+     * Loads the image at the given offset from the current index into the DraweeView at the
+     * same offset from the Showing DraweeView.
+     */
+    private void prepareView( int offset )
+    {
+        int index = currentIndex + offset;
+
+        ImageView drawee = (ImageView) viewTracker.getImage(offset);
+
+        if( offset == 0 )
+        {
+            updateShowingView();
+        }
+
+        // Let a lazy ImageSource know the item is needed.
+        if( hasPosition(index) )
+        {
+            imageSource.request(toItemIndex(index));
+        }
+
+        // This will return the Uri if there exists one.
+        Uri uri = getUri(index);
+
+        SlotCallback boundCallback = slotCallbacks.get(drawee);
+        if( boundCallback != null )
+        {
+            boundCallback.index = index;
+        }
+
+        // After a rotation most DraweeViews already hold the right content, skip those.
+        if( isBound(drawee, uri) )
+        {
+            return;
+        }
+
+        if( uri != null )
+        {
+            SlotCallback slotCallback = getSlotCallback(drawee);
+            slotCallback.prepareTime = SystemClock.uptimeMillis();
+            slotCallback.index = index;
+            slotCallback.completed = false;
+
+            showPreview(slotCallback, uri);
+
+            boolean resize = shouldResize(index, uri);
+
+            // The image counts against the bitmap budget the prefetches share.
+            slotCallback.charge(estimateDecodedBytes());
+
+            imageLoader.load(drawee, uri, imageSource.getThumbnail(toItemIndex(index)),
+                    resize ? decodeWidth : 0, resize ? decodeHeight : 0, getSlotPriority(offset), slotCallback);
+        }
+        else // If no Uri is retrieved, the DraweeView source has to be set to the placeholder.
+        {
+            releaseView(drawee);
+            clearPreview(drawee);
+            drawee.setImageDrawable(getPlaceholder(drawee, index));
+        }
+
+        boundUris.put(drawee, uri);
+    }
+
+    /**
+     * Returns the placeholder of the given position: the colour of its item if it is known, else
+     * the placeholder image.
+     */
+    private Drawable getPlaceholder( View view, int index )
+    {
+        PlaceholderProvider placeholderProvider = PlaceholderProvider.getInstance();
+
+        if( placeholderColors != null && hasPosition(index) )
+        {
+            int color = placeholderColors.getPlaceholderColor(toItemIndex(index));
+
+            if( Color.alpha(color) != 0 )
+            {
+                return placeholderProvider.getColorPlaceholder(view.getResources(), color);
+            }
+        }
+
+        updateDecodeSize();
+
+        return placeholderProvider.getPlaceholder(view.getResources(), imagePlaceholder, decodeWidth, decodeHeight);
+    }
+
+    /*******************
+     * PREVIEWS
+     *******************/
+
+    /**
+     * Shows the stored preview of the given Uri as the background of the DraweeView, until its
+     * image has loaded. The preview is copied into the preview Bitmap of the DraweeView.
+     */
+    private void showPreview( SlotCallback slotCallback, Uri uri )
+    {
+        View view = slotCallback.view;
+        Bitmap preview = thumbnailStore != null ? thumbnailStore.get(uri, slotCallback.preview) : null;
+
+        if( preview == null )
+        {
+            clearPreview(view);
+            return;
+        }
+
+        if( preview != slotCallback.preview )
+        {
+            slotCallback.preview = preview;
+            slotCallback.previewDrawable = new BitmapDrawable(view.getResources(), preview);
+        }
+
+        if( view.getBackground() == slotCallback.previewDrawable )
+        {
+            // Its pixels have been replaced.
+            view.invalidate();
+        }
+        else if( view.getBackground() == null || previewViews.contains(view) )
+        {
+            setBackground(view, slotCallback.previewDrawable);
+            previewViews.add(view);
+        }
+    }
+
+    private void clearPreview( View view )
+    {
+        if( previewViews.remove(view) )
+        {
+            setBackground(view, null);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static void setBackground( View view, Drawable background )
+    {
+        // View.setBackground(Drawable) needs API 16.
+        view.setBackgroundDrawable(background);
+    }
+
+    /**
+     * Captures the preview of the given DraweeView a while after its image has loaded, so a
+     * fade-in has finished and the capture is not done within a switch animation frame.
+     */
+    private void schedulePreviewCapture( SlotCallback slotCallback )
+    {
+        if( thumbnailStore == null )
+        {
+            return;
+        }
+
+        slotCallback.capturePending = true;
+
+        if( !previewCapturePosted )
+        {
+            previewCapturePosted = true;
+            uiHandler.postDelayed(previewCapture, PREVIEW_CAPTURE_DELAY_MS);
+        }
+    }
+
+    /**
+     * Captures the pending previews right away, for example before the DraweeViews are detached.
+     */
+    private void capturePreviewsNow()
+    {
+        if( previewCapturePosted )
+        {
+            previewCapturePosted = false;
+            uiHandler.removeCallbacks(previewCapture);
+        }
+
+        capturePreviews();
+    }
+
+    private void capturePreviews()
+    {
+        int radius = viewTracker.getRadius();
+
+        for( int offset = -radius; offset <= radius; offset++ )
+        {
+            SlotCallback slotCallback = slotCallbacks.get(viewTracker.getImage(offset));
+
+            if( slotCallback != null && slotCallback.capturePending )
+            {
+                slotCallback.capturePending = false;
+                capturePreview(slotCallback);
+            }
+        }
+    }
+
+    /**
+     * Stores a preview of the given DraweeView, as it is drawn, if its image has loaded and there
+     * is no preview of it yet. It is drawn into the preview Bitmap of the DraweeView, and the
+     * pixels are written to the ThumbnailStore in the background.
+     */
+    private void capturePreview( SlotCallback slotCallback )
+    {
+        if( thumbnailStore == null )
+        {
+            return;
+        }
+
+        View view = slotCallback.view;
+        Uri uri = boundUris.get(view);
+
+        int width = view.getWidth();
+        int height = view.getHeight();
+
+        if( uri == null || !slotCallback.completed || previewViews.contains(view) || width <= 0 || height <= 0
+                || thumbnailStore.contains(uri) )
+        {
+            return;
+        }
+
+        int maxSize = thumbnailStore.getMaxSize();
+        float scale = Math.min(maxSize / (float) width, maxSize / (float) height);
+
+        int previewWidth = Math.max(1, Math.min(maxSize, Math.round(width * scale)));
+        int previewHeight = Math.max(1, Math.min(maxSize, Math.round(height * scale)));
+
+        Bitmap preview = ThumbnailStore.reuseBitmap(slotCallback.preview, previewWidth, previewHeight);
+
+        if( preview != slotCallback.preview )
+        {
+            slotCallback.preview = preview;
+            slotCallback.previewDrawable = new BitmapDrawable(view.getResources(), preview);
+        }
+
+        preview.eraseColor(Color.BLACK);
+
+        previewCanvas.setBitmap(preview);
+        previewCanvas.save();
+        previewCanvas.scale(previewWidth / (float) width, previewHeight / (float) height);
+        view.draw(previewCanvas);
+        previewCanvas.restore();
+        previewCanvas.setBitmap(null);
+
+        thumbnailStore.put(uri, preview);
+    }
+
+    /**
+     * Lets a {@link RefiningImageLoader} know which DraweeView is showing.
+     */
+    private void updateShowingView()
+    {
+        if( imageLoader instanceof RefiningImageLoader )
+        {
+            ( (RefiningImageLoader) imageLoader ).setShowing((ImageView) viewTracker.getShowingImage());
+        }
+    }
+
+    /**
+     * Prepares the DraweeViews that show the placeholder again, as their items may have been
+     * loaded by the ImageSource in the meantime.
+     */
+    private void refreshPlaceholderViews()
+    {
+        int radius = viewTracker.getRadius();
+
+        for( int offset = -radius; offset <= radius; offset++ )
+        {
+            View view = viewTracker.getImage(offset);
+
+            if( boundUris.containsKey(view) && boundUris.get(view) == null )
+            {
+                prepareView(offset);
+            }
+        }
+    }
+
+    /**
+     * Prepares the DraweeViews that show a placeholder again, with the current placeholder.
+     */
+    private void rebindPlaceholderViews()
+    {
+        int radius = viewTracker.getRadius();
+
+        for( int offset = -radius; offset <= radius; offset++ )
+        {
+            View view = viewTracker.getImage(offset);
+
+            if( boundUris.containsKey(view) && boundUris.get(view) == null )
+            {
+                boundUris.remove(view);
+                prepareView(offset);
+            }
+        }
+    }
+
+    /**
+     * Releases the image of the given DraweeView, and gives back its bytes of the bitmap budget.
+     */
+    private void releaseView( ImageView drawee )
+    {
+        imageLoader.release(drawee);
+
+        SlotCallback slotCallback = slotCallbacks.get(drawee);
+        if( slotCallback != null )
+        {
+            slotCallback.uncharge();
+        }
+    }
+
+    private SlotCallback getSlotCallback( View view )
+    {
+        SlotCallback slotCallback = slotCallbacks.get(view);
+
+        if( slotCallback == null )
+        {
+            slotCallback = new SlotCallback(view);
+            slotCallbacks.put(view, slotCallback);
+        }
+
+        return slotCallback;
+    }
+
+    /**
+     * Returns a boolean indicating whether the given View already holds the given Uri (or the
+     * placeholder, if the Uri is null).
+     */
+    private boolean isBound( View view, Uri uri )
+    {
+        if( !boundUris.containsKey(view) )
+        {
+            return false;
+        }
+
+        Uri boundUri = boundUris.get(view);
+
+        return boundUri == null ? uri == null : boundUri.equals(uri);
+    }
+
+    /**
+     * Waits for the first frame after a deferred start, and binds the neighbours once it has been
+     * drawn.
+     */
+    private final class StartListener implements ViewTreeObserver.OnPreDrawListener, Runnable
+    {
+        private final View view;
+
+        public StartListener( View view )
+        {
+            this.view = view;
+        }
+
+        @Override
+        public boolean onPreDraw()
+        {
+            remove();
+
+            // Runs after the traversal, so after the frame has been drawn.
+            view.post(this);
+
+            return true;
+        }
+
+        @Override
+        public void run()
+        {
+            if( pendingStart == this )
+            {
+                pendingStart = null;
+                prepareNeighbours();
+            }
+        }
+
+        private void remove()
+        {
+            ViewTreeObserver observer = view.getViewTreeObserver();
+
+            if( observer.isAlive() )
+            {
+                observer.removeOnPreDrawListener(this);
+            }
+        }
+    }
+
+    /**
+     * Follows the DraweeViews being attached, detached and scrolled, and pauses the prefetching
+     * while none of them is attached or the Showing DraweeView is off screen. The prefetcher then
+     * also leaves the queue of the SwitcherCoordinator, which so does not hold on to it.
+     * <p/>
+     * The ImageSwitcher is registered for the memory callbacks of the Application while any of
+     * the DraweeViews is attached, so the Application does not hold on to it either.
+     */
+    private final class VisibilityListener implements View.OnAttachStateChangeListener,
+            ViewTreeObserver.OnScrollChangedListener, ViewTreeObserver.OnGlobalLayoutListener
+    {
+        // The number of DraweeViews attached to a window.
+        private int attachedCount = 0;
+        // The ViewTreeObservers this is registered with, one per window of the DraweeViews.
+        private final ArrayList<ViewTreeObserver> observers = new ArrayList<ViewTreeObserver>();
+        // The Application the ImageSwitcher is registered with for the memory callbacks, if any.
+        private Context application;
+
+        @Override
+        public void onViewAttachedToWindow( View view )
+        {
+            attachedCount++;
+
+            if( application == null )
+            {
+                application = view.getContext().getApplicationContext();
+                application.registerComponentCallbacks(ImageSwitcher.this);
+            }
+
+            ViewTreeObserver observer = view.getViewTreeObserver();
+
+            if( !observers.contains(observer) )
+            {
+                observers.add(observer);
+                observer.addOnScrollChangedListener(this);
+                observer.addOnGlobalLayoutListener(this);
+            }
+
+            update();
+        }
+
+        @Override
+        public void onViewDetachedFromWindow( View view )
+        {
+            attachedCount = Math.max(0, attachedCount - 1);
+
+            if( attachedCount == 0 )
+            {
+                capturePreviewsNow();
+
+                for( int i = 0; i < observers.size(); i++ )
+                {
+                    ViewTreeObserver observer = observers.get(i);
+
+                    if( observer.isAlive() )
+                    {
+                        observer.removeOnScrollChangedListener(this);
+                        removeOnGlobalLayoutListener(observer);
+                    }
+                }
+
+                observers.clear();
+
+                if( application != null )
+                {
+                    application.unregisterComponentCallbacks(ImageSwitcher.this);
+                    application = null;
+                }
+            }
+
+            update();
+        }
+
+        @Override
+        public void onScrollChanged()
+        {
+            update();
+        }
+
+        @Override
+        public void onGlobalLayout()
+        {
+            update();
+        }
+
+        /**
+         * Pauses or resumes the prefetching, as the DraweeViews are now.
+         */
+        private void update()
+        {
+            prefetcher.setPaused(attachedCount == 0 || !isOnScreen());
+        }
+
+        @SuppressWarnings("deprecation")
+        private void removeOnGlobalLayoutListener( ViewTreeObserver observer )
+        {
+            // ViewTreeObserver.removeOnGlobalLayoutListener(...) needs API 16.
+            observer.removeGlobalOnLayoutListener(this);
+        }
+    }
+
+    /**
+     * Receives the loads of a single DraweeView, measuring the time until its image is set and
+     * counting its requests in the RequestStats.
+     */
+    private final class SlotCallback implements ImageLoader.Callback
+    {
+        private final View view;
+
+        // The time the DraweeView was prepared, or 0 once its final image has been set.
+        private long    prepareTime;
+        // The position of the item last bound to the DraweeView.
+        private int     index;
+        // A boolean indicating whether the request of the DraweeView is in flight.
+        private boolean inFlight;
+        // A boolean indicating whether the image of the DraweeView has loaded.
+        private boolean completed;
+        // A boolean indicating whether the preview of the loaded image is still to be captured.
+        private boolean capturePending;
+        // The bytes of the image charged to the SwitcherCoordinator, and the one they were charged to.
+        private long                chargedBytes;
+        private SwitcherCoordinator chargedCoordinator;
+
+        // The preview shown until the image has loaded, and captured once it has. Re-used.
+        private Bitmap         preview;
+        private BitmapDrawable previewDrawable;
+
+        public SlotCallback( View view )
+        {
+            this.view = view;
+        }
+
+        @Override
+        public void onSubmit()
+        {
+            inFlight = true;
+            requestStats.onIssued();
+        }
+
+        @Override
+        public void onCompleted()
+        {
+            if( metricsListener != null && prepareTime != 0 )
+            {
+                metricsListener.onTimeToImage(SystemClock.uptimeMillis() - prepareTime);
+            }
+
+            prepareTime = 0;
+            completed = true;
+            clearPreview(view);
+            schedulePreviewCapture(this);
+
+            if( inFlight )
+            {
+                inFlight = false;
+                requestStats.onCompleted();
+            }
+        }
+
+        @Override
+        public void onFailed()
+        {
+            if( inFlight )
+            {
+                inFlight = false;
+                requestStats.onFailed();
+            }
+
+            // No image is held.
+            uncharge();
+        }
+
+        @Override
+        public void onRelease()
+        {
+            // Released (replaced by a new request, or detached) before it finished.
+            if( inFlight )
+            {
+                inFlight = false;
+                requestStats.onCancelled();
+            }
+        }
+
+        /**
+         * Charges the bytes of the image about to be loaded, in place of those of the former one.
+         */
+        private void charge( long bytes )
+        {
+            uncharge();
+
+            SwitcherCoordinator coordinator = prefetcher.getCoordinator();
+
+            if( coordinator != null )
+            {
+                coordinator.chargeViewBytes(bytes);
+                chargedBytes = bytes;
+                chargedCoordinator = coordinator;
+            }
+        }
+
+        private void uncharge()
+        {
+            if( chargedCoordinator != null )
+            {
+                chargedCoordinator.releaseViewBytes(chargedBytes);
+                chargedBytes = 0;
+                chargedCoordinator = null;
+            }
+        }
     }
 }
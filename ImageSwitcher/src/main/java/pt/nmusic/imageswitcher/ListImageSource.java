@@ -0,0 +1,72 @@
+package pt.nmusic.imageswitcher;
+
+import android.net.Uri;
+
+import java.util.List;
+
+/**
+ * An {@link ImageSource} backed by an in-memory List of Uris.
+ * <p/>
+ * A null entry in the List is shown as the placeholder image.
+ */
+public class ListImageSource implements ImageSource
+{
+    private final List<Uri> imageUri;
+    private final List<Uri> thumbnailUri;
+
+    public ListImageSource( List<Uri> imageUri )
+    {
+        this(imageUri, null);
+    }
+
+    /**
+     * @param imageUri     The Uris of the full images.
+     * @param thumbnailUri The Uris of the thumbnails, at the same indexes as the full images. The
+     *                     List, or any entry in it, can be null.
+     */
+    public ListImageSource( List<Uri> imageUri, List<Uri> thumbnailUri )
+    {
+        if( imageUri == null )
+        {
+            throw new IllegalArgumentException("Given Uri List was null! Error!");
+        }
+
+        if( thumbnailUri != null && thumbnailUri.size() != imageUri.size() )
+        {
+            throw new IllegalArgumentException("Given thumbnail Uri List did not match the Uri List! Error!");
+        }
+
+        this.imageUri = imageUri;
+        this.thumbnailUri = thumbnailUri;
+    }
+
+    @Override
+    public int size()
+    {
+        return imageUri.size();
+    }
+
+    @Override
+    public Uri get( int index )
+    {
+        return imageUri.get(index);
+    }
+
+    @Override
+    public Uri getThumbnail( int index )
+    {
+        return thumbnailUri != null ? thumbnailUri.get(index) : null;
+    }
+
+    @Override
+    public void request( int index )
+    {
+        // Everything is already in memory.
+    }
+
+    @Override
+    public void setListener( Listener listener )
+    {
+        // Nothing is ever loaded later.
+    }
+}
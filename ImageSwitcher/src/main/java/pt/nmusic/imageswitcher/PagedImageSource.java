@@ -0,0 +1,327 @@
+package pt.nmusic.imageswitcher;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+
+import java.util.List;
+
+/**
+ * An {@link ImageSource} that loads its Uris in pages through a {@link PageLoader}, for example
+ * from a paged REST API or a database.
+ * <p/>
+ * Pages are only loaded when an item in them is requested, and the next page is loaded in advance
+ * once an item close to the end of the loaded items is requested. Only a limited number of pages
+ * are kept, the ones furthest away from the last requested item are dropped (and loaded again if
+ * they are needed later).
+ * <p/>
+ * If the total number of items is not known up front, {@link #size()} is the number of items up
+ * to the end of the furthest loaded page, and grows until the {@link PageLoader} reports the last
+ * page.
+ */
+public class PagedImageSource implements ImageSource
+{
+    public static final int UNKNOWN_SIZE = -1;
+
+    private final int        pageSize;
+    private final PageLoader pageLoader;
+    private final Handler    uiHandler;
+
+    // The total number of items, or UNKNOWN_SIZE.
+    private int totalSize;
+    // The number of items up to the end of the furthest loaded page (used while totalSize is unknown).
+    private int loadedSize = 0;
+
+    // Load the next page when an item this close to the end of the loaded items is requested.
+    private int loadMoreDistance;
+
+    // The maximum number of pages kept in memory.
+    private int maxCachedPages = 8;
+
+    private final SparseArray<List<Uri>> pages      = new SparseArray<List<Uri>>();
+    private final SparseArray<List<Uri>> thumbnails = new SparseArray<List<Uri>>();
+    private final SparseBooleanArray     loading    = new SparseBooleanArray();
+
+    // The page of the last requested item, pages furthest away from it are dropped first.
+    private int lastRequestedPage = 0;
+
+    private Listener listener;
+
+    /**
+     * Loads a page of Uris. The load should happen in the background, and the result be given to
+     * the {@link PageCallback} (on any thread).
+     */
+    public interface PageLoader
+    {
+        /**
+         * @param page     The index of the page.
+         * @param offset   The index of the first item of the page.
+         * @param count    The number of items in a full page.
+         * @param callback The callback to give the result to.
+         */
+        void loadPage( int page, int offset, int count, PageCallback callback );
+    }
+
+    /**
+     * Receives the result of a {@link PageLoader#loadPage(int, int, int, PageCallback)}.
+     */
+    public interface PageCallback
+    {
+        /**
+         * @param page     The index of the loaded page.
+         * @param items    The Uris of the page. Can be fewer than a full page for the last page.
+         * @param lastPage Whether there are no pages after this one.
+         */
+        void onPageLoaded( int page, List<Uri> items, boolean lastPage );
+
+        /**
+         * @param page       The index of the loaded page.
+         * @param items      The Uris of the page. Can be fewer than a full page for the last page.
+         * @param thumbnails The thumbnail Uris of the page, at the same indexes as the items. The
+         *                   List, or any entry in it, can be null.
+         * @param lastPage   Whether there are no pages after this one.
+         */
+        void onPageLoaded( int page, List<Uri> items, List<Uri> thumbnails, boolean lastPage );
+
+        /**
+         * The page could not be loaded. It will be requested again the next time one of its
+         * items is needed.
+         */
+        void onPageFailed( int page );
+    }
+
+    /**
+     * Constructor for a source whose total number of items is not known up front.
+     */
+    public PagedImageSource( int pageSize, PageLoader pageLoader )
+    {
+        this(pageSize, UNKNOWN_SIZE, pageLoader);
+    }
+
+    /**
+     * @param pageSize   The number of items in a page.
+     * @param totalSize  The total number of items, or {@link #UNKNOWN_SIZE}.
+     * @param pageLoader The PageLoader that loads the pages.
+     */
+    public PagedImageSource( int pageSize, int totalSize, PageLoader pageLoader )
+    {
+        if( pageSize < 1 )
+        {
+            throw new IllegalArgumentException("Given page size was less than one! Error!");
+        }
+
+        if( pageLoader == null )
+        {
+            throw new IllegalArgumentException("Given PageLoader was null! Error!");
+        }
+
+        this.pageSize = pageSize;
+        this.totalSize = totalSize;
+        this.pageLoader = pageLoader;
+        this.loadMoreDistance = pageSize / 2;
+        this.uiHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /*******************
+     * CONFIGURATION
+     *******************/
+
+    /**
+     * Sets the maximum number of pages kept in memory.
+     */
+    public void setMaxCachedPages( int maxCachedPages )
+    {
+        if( maxCachedPages < 2 )
+        {
+            throw new IllegalArgumentException("Given max cached pages was less than two! Error!");
+        }
+
+        this.maxCachedPages = maxCachedPages;
+    }
+
+    /**
+     * Sets how close (in items) to the end of the loaded items a request has to be to load the
+     * next page in advance.
+     */
+    public void setLoadMoreDistance( int loadMoreDistance )
+    {
+        this.loadMoreDistance = loadMoreDistance;
+    }
+
+    /*******************
+     * IMAGE SOURCE
+     *******************/
+
+    @Override
+    public int size()
+    {
+        return totalSize != UNKNOWN_SIZE ? totalSize : loadedSize;
+    }
+
+    @Override
+    public Uri get( int index )
+    {
+        List<Uri> page = pages.get(index / pageSize);
+
+        if( page == null || index % pageSize >= page.size() )
+        {
+            return null;
+        }
+
+        return page.get(index % pageSize);
+    }
+
+    @Override
+    public Uri getThumbnail( int index )
+    {
+        List<Uri> page = thumbnails.get(index / pageSize);
+
+        if( page == null || index % pageSize >= page.size() )
+        {
+            return null;
+        }
+
+        return page.get(index % pageSize);
+    }
+
+    @Override
+    public void request( int index )
+    {
+        if( index < 0 )
+        {
+            return;
+        }
+
+        int page = index / pageSize;
+        lastRequestedPage = page;
+
+        loadPage(page);
+
+        // Load more at the edge of the loaded items.
+        if( index + loadMoreDistance >= size() )
+        {
+            loadPage(page + 1);
+        }
+    }
+
+    @Override
+    public void setListener( Listener listener )
+    {
+        this.listener = listener;
+    }
+
+    private void loadPage( int page )
+    {
+        if( pages.get(page) != null || loading.get(page) )
+        {
+            return;
+        }
+
+        // Never load beyond the end.
+        if( size() != 0 && page * pageSize >= size() && ( totalSize != UNKNOWN_SIZE || page * pageSize > loadedSize ) )
+        {
+            return;
+        }
+
+        loading.put(page, true);
+        pageLoader.loadPage(page, page * pageSize, pageSize, new UiPageCallback());
+    }
+
+    /**
+     * Called on the UI thread when a page has been loaded.
+     */
+    private void onPageLoaded( int page, List<Uri> items, List<Uri> pageThumbnails, boolean lastPage )
+    {
+        loading.delete(page);
+        pages.put(page, items);
+
+        if( pageThumbnails != null )
+        {
+            thumbnails.put(page, pageThumbnails);
+        }
+
+        int pageEnd = ( page * pageSize ) + items.size();
+
+        if( totalSize == UNKNOWN_SIZE )
+        {
+            if( lastPage )
+            {
+                totalSize = pageEnd;
+            }
+            else
+            {
+                loadedSize = Math.max(loadedSize, pageEnd);
+            }
+        }
+
+        dropFarthestPages();
+
+        if( listener != null )
+        {
+            listener.onItemsLoaded(page * pageSize, items.size());
+        }
+    }
+
+    /**
+     * Drops the pages furthest away from the last requested page, until at most maxCachedPages
+     * pages are left.
+     */
+    private void dropFarthestPages()
+    {
+        while( pages.size() > maxCachedPages )
+        {
+            int farthest = 0;
+            for( int i = 1; i < pages.size(); i++ )
+            {
+                if( Math.abs(pages.keyAt(i) - lastRequestedPage) > Math.abs(pages.keyAt(farthest) - lastRequestedPage) )
+                {
+                    farthest = i;
+                }
+            }
+
+            thumbnails.remove(pages.keyAt(farthest));
+            pages.removeAt(farthest);
+        }
+    }
+
+    /**
+     * Hands the results of the PageLoader back to the UI thread.
+     */
+    private final class UiPageCallback implements PageCallback
+    {
+        @Override
+        public void onPageLoaded( int page, List<Uri> items, boolean lastPage )
+        {
+            onPageLoaded(page, items, null, lastPage);
+        }
+
+        @Override
+        public void onPageLoaded( final int page, final List<Uri> items, final List<Uri> thumbnails,
+                                  final boolean lastPage )
+        {
+            uiHandler.post(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    PagedImageSource.this.onPageLoaded(page, items, thumbnails, lastPage);
+                }
+            });
+        }
+
+        @Override
+        public void onPageFailed( final int page )
+        {
+            uiHandler.post(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    loading.delete(page);
+                }
+            });
+        }
+    }
+}
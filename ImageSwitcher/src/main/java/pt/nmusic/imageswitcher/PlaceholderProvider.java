@@ -0,0 +1,180 @@
+package pt.nmusic.imageswitcher;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.GradientDrawable;
+import android.util.LruCache;
+
+/**
+ * Provides the placeholders of all the {@link ImageSwitcher}s of the process, so a placeholder
+ * resource is decoded once (at the size of the DraweeViews) instead of every time a DraweeView
+ * reaches the end of the list.
+ * <p/>
+ * Every placeholder is kept as a Drawable.ConstantState, per resource, size and screen density.
+ * Every call returns a new Drawable from it, which shares the decoded Bitmap with all the others.
+ * <p/>
+ * Items can also get a plain colour (or gradient) placeholder from their dominant colour, see
+ * {@link ImageSwitcher#setPlaceholderColors}, which needs no decoding at all.
+ * <p/>
+ * All the functions must be called on the UI thread.
+ */
+public class PlaceholderProvider
+{
+    private static PlaceholderProvider instance;
+
+    // The ConstantStates of the placeholders, per key.
+    private final LruCache<String, Drawable.ConstantState> states = new LruCache<String, Drawable.ConstantState>(32);
+
+    private boolean gradient = true;
+
+    /**
+     * Returns the PlaceholderProvider shared by all the ImageSwitchers of the process.
+     */
+    public static PlaceholderProvider getInstance()
+    {
+        if( instance == null )
+        {
+            instance = new PlaceholderProvider();
+        }
+
+        return instance;
+    }
+
+    /*******************
+     * CONFIGURATION
+     *******************/
+
+    /**
+     * Sets whether the colour placeholders are a subtle gradient of the colour, which is the
+     * default, or the plain colour.
+     */
+    public void setGradient( boolean gradient )
+    {
+        this.gradient = gradient;
+    }
+
+    /**
+     * Forgets all the placeholders, for example when the system is low on memory.
+     */
+    public void clear()
+    {
+        states.evictAll();
+    }
+
+    /*******************
+     * PLACEHOLDERS
+     *******************/
+
+    /**
+     * Returns the placeholder of the given drawable resource, decoded (once) at about the given
+     * size. Resources that are not Bitmaps are loaded as they are.
+     *
+     * @param width  The width of the DraweeViews, or 0 to decode the resource at its full size.
+     * @param height The height of the DraweeViews, or 0 to decode the resource at its full size.
+     */
+    public Drawable getPlaceholder( Resources resources, int resId, int width, int height )
+    {
+        String key = resId + "@" + width + "x" + height + "/" + resources.getDisplayMetrics().densityDpi;
+        Drawable.ConstantState state = states.get(key);
+
+        if( state == null )
+        {
+            Drawable drawable = decode(resources, resId, width, height);
+            state = drawable.getConstantState();
+
+            if( state == null )
+            {
+                return drawable;
+            }
+
+            states.put(key, state);
+        }
+
+        return state.newDrawable(resources);
+    }
+
+    /**
+     * Returns a placeholder of the given (dominant) colour.
+     */
+    public Drawable getColorPlaceholder( Resources resources, int color )
+    {
+        String key = "#" + Integer.toHexString(color) + ( gradient ? "g" : "" );
+        Drawable.ConstantState state = states.get(key);
+
+        if( state == null )
+        {
+            Drawable drawable;
+
+            if( gradient )
+            {
+                drawable = new GradientDrawable(GradientDrawable.Orientation.TOP_BOTTOM, new int[]{ color, darken(color) });
+            }
+            else
+            {
+                drawable = new ColorDrawable(color);
+            }
+
+            state = drawable.getConstantState();
+
+            if( state == null )
+            {
+                return drawable;
+            }
+
+            states.put(key, state);
+        }
+
+        return state.newDrawable(resources);
+    }
+
+    // Resources.getDrawable(int, Theme) needs API 21, the placeholders do not use theme attributes.
+    @SuppressWarnings("deprecation")
+    private static Drawable decode( Resources resources, int resId, int width, int height )
+    {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        options.inScaled = false;
+        BitmapFactory.decodeResource(resources, resId, options);
+
+        // Not a Bitmap, for example a shape or a vector.
+        if( options.outWidth <= 0 || options.outHeight <= 0 )
+        {
+            return resources.getDrawable(resId);
+        }
+
+        int sampleSize = 1;
+
+        if( width > 0 && height > 0 )
+        {
+            while( options.outWidth / ( sampleSize * 2 ) >= width && options.outHeight / ( sampleSize * 2 ) >= height )
+            {
+                sampleSize *= 2;
+            }
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+
+        Bitmap bitmap = BitmapFactory.decodeResource(resources, resId, options);
+
+        if( bitmap == null )
+        {
+            return resources.getDrawable(resId);
+        }
+
+        return new BitmapDrawable(resources, bitmap);
+    }
+
+    /**
+     * Returns the given colour, a little darker.
+     */
+    private static int darken( int color )
+    {
+        return Color.argb(Color.alpha(color), Color.red(color) * 4 / 5, Color.green(color) * 4 / 5, Color.blue(color) * 4 / 5);
+    }
+}
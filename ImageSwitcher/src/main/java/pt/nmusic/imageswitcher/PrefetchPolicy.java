@@ -0,0 +1,290 @@
+package pt.nmusic.imageswitcher;
+
+/**
+ * Decides how many items ahead of the user the {@link ImagePrefetcher} looks, from how fast the
+ * user switches and how long the images take to load.
+ * <p/>
+ * The policy keeps a moving average of the dwell time (the time between two switches) and of the
+ * load latency (the time a prefetch takes). An item the user reaches in N dwell times has to be
+ * requested at least one load latency before that, so the prefetch depth is the latency divided
+ * by the dwell time, rounded up, plus one item of margin. Slow browsers then only prefetch the
+ * next item or two, while fast flingers get a deeper window.
+ * <p/>
+ * The depth is bounded by the minimum and maximum depth, by the memory cap (the bytes of the
+ * prefetched items) and by the bandwidth cap (the number of requests the connection should carry
+ * at once, which at a steady pace is about the depth minus one).
+ * <p/>
+ * The policy also counts whether the image of each item was ready when it came on screen, which
+ * is the measure of how well the prefetching keeps up.
+ * <p/>
+ * All the times are passed in, so the policy itself does not depend on a clock. All the functions
+ * must be called on the UI thread.
+ */
+public class PrefetchPolicy
+{
+    // How much of the previous average is kept on every new sample.
+    private float smoothing = 0.7f;
+
+    // Dwell times longer than this (in milliseconds) are the user pausing, not browsing.
+    private long maxDwellTime = 10000;
+
+    private int  minDepth     = 1;
+    private int  maxDepth     = 8;
+    // The depth used until both a dwell time and a load latency have been measured.
+    private int  initialDepth = 4;
+
+    // The bandwidth cap, the maximum number of requests in flight at a steady pace.
+    private int  maxInFlight  = 4;
+    // The memory cap, the maximum bytes of the prefetched items. 0 for none.
+    private long maxBytes     = 0;
+    // The (estimated) bytes of a single prefetched item.
+    private long itemBytes    = 0;
+
+    // The moving averages, in milliseconds, or -1 until the first sample.
+    private float dwellTime   = -1;
+    private float loadLatency = -1;
+    // The time of the last switch, or 0 if there was none.
+    private long  lastSwitchTime = 0;
+
+    private long hitCount  = 0;
+    private long missCount = 0;
+
+    /*******************
+     * CONFIGURATION
+     *******************/
+
+    /**
+     * Sets how much of the previous average is kept on every new sample, between 0 (only the last
+     * sample counts) and 1 (exclusive).
+     */
+    public void setSmoothing( float smoothing )
+    {
+        if( smoothing < 0 || smoothing >= 1 )
+        {
+            throw new IllegalArgumentException("Given smoothing was outside [0, 1)! Error!");
+        }
+
+        this.smoothing = smoothing;
+    }
+
+    /**
+     * Sets the dwell time (in milliseconds) above which the user is taken to have paused, and the
+     * dwell time is counted as this long.
+     */
+    public void setMaxDwellTime( long maxDwellTime )
+    {
+        this.maxDwellTime = maxDwellTime;
+    }
+
+    /**
+     * Sets the bounds of the prefetch depth, and the depth used before anything has been
+     * measured.
+     */
+    public void setDepth( int minDepth, int maxDepth, int initialDepth )
+    {
+        if( minDepth < 0 || maxDepth < minDepth )
+        {
+            throw new IllegalArgumentException("Given prefetch depth bounds were invalid! Error!");
+        }
+
+        this.minDepth = minDepth;
+        this.maxDepth = maxDepth;
+        this.initialDepth = initialDepth;
+    }
+
+    /**
+     * Sets the bandwidth cap, the maximum number of prefetch requests that should be in flight at
+     * a steady browsing pace.
+     */
+    public void setBandwidthCap( int maxInFlight )
+    {
+        if( maxInFlight < 1 )
+        {
+            throw new IllegalArgumentException("Given max in flight was less than one! Error!");
+        }
+
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Sets the memory cap, the maximum bytes of the prefetched items. 0 for none.
+     */
+    public void setMemoryCap( long maxBytes )
+    {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Sets the (estimated) bytes of a single prefetched item, for the memory cap. The
+     * ImagePrefetcher keeps this up to date.
+     */
+    public void setItemBytes( long itemBytes )
+    {
+        this.itemBytes = itemBytes;
+    }
+
+    /*******************
+     * MEASURING
+     *******************/
+
+    /**
+     * Records a switch to the next or previous item.
+     *
+     * @param timeMs The time of the switch, in milliseconds.
+     */
+    public void onSwitch( long timeMs )
+    {
+        if( lastSwitchTime != 0 )
+        {
+            long dwell = Math.max(1, Math.min(timeMs - lastSwitchTime, maxDwellTime));
+            dwellTime = average(dwellTime, dwell);
+        }
+
+        lastSwitchTime = timeMs;
+    }
+
+    /**
+     * Records the time an image took to load.
+     *
+     * @param latencyMs The time from the request until the image had loaded, in milliseconds.
+     */
+    public void onLoadFinished( long latencyMs )
+    {
+        loadLatency = average(loadLatency, Math.max(0, latencyMs));
+    }
+
+    /**
+     * Records an item coming on screen.
+     *
+     * @param ready Whether its image had already loaded.
+     */
+    public void onItemShown( boolean ready )
+    {
+        if( ready )
+        {
+            hitCount++;
+        }
+        else
+        {
+            missCount++;
+        }
+    }
+
+    private float average( float average, float sample )
+    {
+        if( average < 0 )
+        {
+            return sample;
+        }
+
+        return ( average * smoothing ) + ( sample * ( 1 - smoothing ) );
+    }
+
+    /*******************
+     * POLICY
+     *******************/
+
+    /**
+     * Returns the number of items ahead of the showing one that should be loaded or in flight.
+     */
+    public int getPrefetchDepth()
+    {
+        int depth;
+
+        if( dwellTime < 0 || loadLatency < 0 )
+        {
+            depth = initialDepth;
+        }
+        else
+        {
+            depth = (int) Math.ceil(loadLatency / dwellTime) + 1;
+        }
+
+        depth = Math.min(depth, maxDepth);
+
+        // About depth - 1 requests are in flight at a steady pace.
+        depth = Math.min(depth, maxInFlight + 1);
+
+        if( maxBytes > 0 && itemBytes > 0 )
+        {
+            depth = (int) Math.min(depth, maxBytes / itemBytes);
+        }
+
+        return Math.max(minDepth, depth);
+    }
+
+    /**
+     * Returns the average dwell time in milliseconds, or -1 if it has not been measured yet.
+     */
+    public float getDwellTime()
+    {
+        return dwellTime;
+    }
+
+    /**
+     * Returns the average load latency in milliseconds, or -1 if it has not been measured yet.
+     */
+    public float getLoadLatency()
+    {
+        return loadLatency;
+    }
+
+    /*******************
+     * HIT RATE
+     *******************/
+
+    /**
+     * Returns the number of items whose image was ready when they came on screen.
+     */
+    public long getHitCount()
+    {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of items whose image was not ready when they came on screen.
+     */
+    public long getMissCount()
+    {
+        return missCount;
+    }
+
+    /**
+     * Returns the fraction of the items whose image was ready when they came on screen, or 0 if
+     * no item has been shown yet.
+     */
+    public float getHitRate()
+    {
+        long shownCount = hitCount + missCount;
+
+        return shownCount == 0 ? 0 : hitCount / (float) shownCount;
+    }
+
+    /**
+     * Resets the hit and miss counters.
+     */
+    public void resetCounters()
+    {
+        hitCount = 0;
+        missCount = 0;
+    }
+
+    /**
+     * Forgets all the measurements and resets the counters.
+     */
+    public void reset()
+    {
+        dwellTime = -1;
+        loadLatency = -1;
+        lastSwitchTime = 0;
+
+        resetCounters();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PrefetchPolicy{depth=" + getPrefetchDepth() + ", dwellTime=" + dwellTime + ", loadLatency="
+                + loadLatency + ", hitRate=" + getHitRate() + "}";
+    }
+}
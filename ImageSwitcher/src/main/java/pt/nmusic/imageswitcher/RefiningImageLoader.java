@@ -0,0 +1,17 @@
+package pt.nmusic.imageswitcher;
+
+import android.widget.ImageView;
+
+/**
+ * An {@link ImageLoader} that loads the Showing ImageView at a higher quality than the others,
+ * for example by refining it with extra detail while it is showing. The {@link ImageSwitcher}
+ * tells it which ImageView is showing after every switch.
+ */
+public interface RefiningImageLoader extends ImageLoader
+{
+    /**
+     * Sets the ImageView that is showing. The images of all the other ImageViews can be reduced
+     * to what is needed to swipe them in.
+     */
+    void setShowing( ImageView view );
+}
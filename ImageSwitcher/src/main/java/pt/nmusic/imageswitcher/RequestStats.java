@@ -0,0 +1,104 @@
+package pt.nmusic.imageswitcher;
+
+/**
+ * Counts the image requests issued by an {@link ImageSwitcher}, both for its DraweeViews and its
+ * prefetches, and how each of them ended. The number of requests in flight is the number issued
+ * minus the ones that have ended, which is a measure of the download and decode queue depth.
+ * <p/>
+ * All the functions must be called on the UI thread.
+ */
+public class RequestStats
+{
+    private long issued;
+    private long completed;
+    private long failed;
+    private long cancelled;
+
+    /**
+     * Returns the number of requests issued.
+     */
+    public long getIssuedCount()
+    {
+        return issued;
+    }
+
+    /**
+     * Returns the number of requests that delivered their image.
+     */
+    public long getCompletedCount()
+    {
+        return completed;
+    }
+
+    /**
+     * Returns the number of requests that failed.
+     */
+    public long getFailedCount()
+    {
+        return failed;
+    }
+
+    /**
+     * Returns the number of requests cancelled before they finished, because their item left the
+     * window or its DraweeView was released.
+     */
+    public long getCancelledCount()
+    {
+        return cancelled;
+    }
+
+    /**
+     * Returns the number of requests issued that have not ended yet.
+     */
+    public long getInFlightCount()
+    {
+        return issued - completed - failed - cancelled;
+    }
+
+    /**
+     * Resets all the counters. Requests in flight at the time are no longer counted when they end.
+     */
+    public void reset()
+    {
+        issued = 0;
+        completed = 0;
+        failed = 0;
+        cancelled = 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "RequestStats{issued=" + issued + ", completed=" + completed + ", failed=" + failed
+                + ", cancelled=" + cancelled + "}";
+    }
+
+    void onIssued()
+    {
+        issued++;
+    }
+
+    void onCompleted()
+    {
+        if( getInFlightCount() > 0 )
+        {
+            completed++;
+        }
+    }
+
+    void onFailed()
+    {
+        if( getInFlightCount() > 0 )
+        {
+            failed++;
+        }
+    }
+
+    void onCancelled()
+    {
+        if( getInFlightCount() > 0 )
+        {
+            cancelled++;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package pt.nmusic.imageswitcher;
+
+/**
+ * A {@link Switcher} that can also jump directly to any item, used by
+ * {@link SwitchListener#seekTo(int, boolean)}.
+ */
+public interface SeekableSwitcher extends Switcher
+{
+    /**
+     * Returns the index of the showing item.
+     */
+    int getCurrentIndex();
+
+    /**
+     * Returns a boolean indicating whether there is an item at the given index.
+     */
+    boolean hasItem( int index );
+
+    /**
+     * Returns the number of switches from the showing item to the item at the given index, the
+     * way {@link #seekAction(int, boolean)} would go: positive towards the next items and
+     * negative towards the previous ones.
+     *
+     * @throws IllegalArgumentException If the index is not accepted by seekAction.
+     */
+    int getSeekDistance( int index );
+
+    /**
+     * Performs the action required when jumping directly to the given item, and prepares all the
+     * Views for it in one go (the Showing View first) without rotating the ViewTracker.
+     *
+     * @param index         The index of the item to show.
+     * @param userInitiated A boolean indicating whether the function has been called because of a
+     *                      user performed action or called by the system in some other way.
+     *                      Can be used to differentiate between Touch and System initiated events.
+     */
+    boolean seekAction( int index, boolean userInitiated );
+}
@@ -0,0 +1,37 @@
+package pt.nmusic.imageswitcher;
+
+/**
+ * An optional companion to the {@link Switcher}, notified by the {@link SwitchListener} of every
+ * swipe. A Switcher that also implements this interface is registered automatically.
+ */
+public interface SwipeObserver
+{
+    /**
+     * Called when the user starts a swipe, right before the Previous and Next Views are made
+     * visible.
+     */
+    void onSwipeStarted();
+
+    /**
+     * Called every time the user drags the Views.
+     *
+     * @param progress The distance dragged, as a fraction of the distance needed to switch.
+     *                 Positive towards the next item and negative towards the previous item.
+     */
+    void onSwipeProgress( float progress );
+
+    /**
+     * Called when the user lets go of the screen.
+     *
+     * @param switched Whether the swipe resulted in a switch to the next or previous item.
+     * @param speed    The speed of the finger when it let go, in screen widths per second.
+     */
+    void onSwipeEnded( boolean switched, float speed );
+
+    /**
+     * Called when the Views have come to rest after a swipe: its switch (or return to the center)
+     * animation has ended and no more switches are queued. Also called after switch animations
+     * that did not follow a swipe.
+     */
+    void onSettled();
+}
@@ -3,44 +3,159 @@ package pt.nmusic.imageswitcher;
 import android.animation.Animator;
 import android.animation.AnimatorSet;
 import android.animation.ObjectAnimator;
+import android.animation.ValueAnimator;
 import android.content.Context;
+import android.os.AsyncTask;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
 import android.util.DisplayMetrics;
 import android.util.Log;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
+import android.view.SurfaceView;
+import android.view.TextureView;
 import android.view.View;
 import android.view.WindowManager;
+import android.view.animation.AccelerateDecelerateInterpolator;
+import android.view.animation.Interpolator;
+import android.view.animation.LinearInterpolator;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+import pt.nmusic.imageswitcher.engine.SwipeEngine;
 
 /**
  * Created by bam on 14/11/15.
  */
 public class SwitchListener implements View.OnTouchListener
 {
+    // The directions a switch animation can move the backgrounds in.
+    private static final int MOVE_LEFT   = 0;
+    private static final int MOVE_CENTER = 1;
+    private static final int MOVE_RIGHT  = 2;
+
+    // The states a swipe can be in.
+    private static final int STATE_IDLE     = 0; // No touch and no animation.
+    private static final int STATE_DRAGGING = 1; // The user is touching the screen.
+    private static final int STATE_SETTLING = 2; // A switch (or reset) animation is running.
+
     private final GestureDetector swipeListener;
 
     private ViewTracker viewTracker;
     private Switcher    switcher;
 
+    // The observers notified of the start, progress and end of every swipe.
+    private final ArrayList<SwipeObserver> swipeObservers = new ArrayList<SwipeObserver>();
+
     private int     animationDuration = 250;
     private boolean debug             = false;
 
+    // A boolean indicating whether the switch animations are built once and re-used.
+    private boolean                 reuseAnimators = false;
+    private ReusableSwitchAnimation reusableAnimation;
+
     // The height and width of the screen.
     private int widthPixels;
     private int heightPixels;
 
     // SWIPE variables
-    // A boolean indicating whether the user is touching the screen.
-    private boolean touchInProgress = false;
-    // A boolean indicating whether there is a Reset Swipe background process.
-    private boolean resetInProgress = false;
+    // The current state of the swipe, one of the STATE_ constants.
+    private int state = STATE_IDLE;
+
+    // The animation running while settling, and the direction it moves the backgrounds in.
+    private Animator runningAnimation;
+    private int      runningDirection;
+    // A boolean indicating whether the running animation is being grabbed by the user.
+    private boolean  grabbing = false;
+
+    // Switches requested while a switch animation was running, positive for next and negative for
+    // previous. They are performed one after another once the running animation has finished.
+    private int     queuedSteps = 0;
+    private boolean queuedUserInitiated;
+    // Starts the next queued switch, posted once the running animation has finished.
+    private final Handler  uiHandler  = new Handler(Looper.getMainLooper());
+    private boolean        queuedStepPosted = false;
+    private final Runnable queuedStep = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            queuedStepPosted = false;
+
+            // The user has taken over, or another switch has started (which posts it again).
+            if( state != STATE_IDLE )
+            {
+                return;
+            }
 
-    // The total amount of touch distance scrolled, either direction.
-    private float distanceScrolled;
+            performQueuedStep();
+
+            // Unless a queued switch was started, the layers are no longer needed.
+            dropLayersIfIdle();
+        }
+    };
+
+    // Tracks the drag and decides whether a release or fling results in a switch.
+    private SwipeEngine engine;
+
+    // ASYNC variables
+    // Runs the background actions of an AsyncSwitcher.
+    private Executor switchExecutor = AsyncTask.SERIAL_EXECUTOR;
+    // A boolean indicating whether the Views are prepared once the UI thread is idle, instead of
+    // in the frame the switch ends in.
+    private boolean  deferPreparation = false;
+    // A boolean indicating whether a deferred preparation is waiting for the UI thread to be idle.
+    private boolean  preparationPending = false;
+    private boolean  pendingUserInitiated;
+    private final MessageQueue.IdleHandler preparationIdleHandler = new MessageQueue.IdleHandler()
+    {
+        @Override
+        public boolean queueIdle()
+        {
+            if( preparationPending )
+            {
+                preparationPending = false;
+                prepareViews(pendingUserInitiated);
+            }
 
-    // The distance (in pixels) that the scroll has to pass to count as a desire to switch.
-    private int switchScrollThreshold;
-    // This variable determines at percentage of the screen scroll the switch should happen.
-    private float switchPercentage = 0.5f;
+            return false;
+        }
+    };
+
+    // HARDWARE LAYER variables
+    // A boolean indicating whether the slots are promoted to hardware layers while swiping.
+    private boolean      hardwareLayers = false;
+    // The Views promoted to a hardware layer by this class.
+    private final View[] layeredViews   = new View[4];
+    private int          layeredCount   = 0;
+
+    // FRAME COALESCING variables
+    // Applies the drag translations once per frame (null unless enabled, and before Jelly Bean).
+    private FrameCoalescer frameCoalescer;
+    // The time (in milliseconds) the drag position is extrapolated ahead with frame coalescing.
+    private int            dragPrediction = 8;
+    private final Runnable applyDragFrame = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            onDragFrame();
+        }
+    };
+
+    // METRICS variables
+    private SwitchMetricsListener metricsListener;
+    // Counts the dropped frames of a drag or animation (null before Jelly Bean).
+    private FrameDropMonitor      frameDropMonitor;
+    // A boolean indicating whether the FrameDropMonitor is measuring an animation, not a drag.
+    private boolean               monitoringAnimation;
+    private long                  touchDownTime;
+    private boolean               firstMoveReported;
+    private long                  animationStartTime;
 
     /**
      * Constructor for the class with the necessary variables.
@@ -72,7 +187,10 @@ public class SwitchListener implements View.OnTouchListener
         this.viewTracker = viewTracker;
         this.switcher = switcher;
 
-        swipeListener = new GestureDetector(context, new GestureListener(context));
+        if( switcher instanceof SwipeObserver )
+        {
+            swipeObservers.add((SwipeObserver) switcher);
+        }
 
         // Get the full width (and height) of the screen.
         WindowManager wm = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
@@ -82,8 +200,14 @@ public class SwitchListener implements View.OnTouchListener
         widthPixels = metrics.widthPixels;
         heightPixels = metrics.heightPixels;
 
-        // The Threshold that needs to be passed for the simple scroll to register a switch.
-        switchScrollThreshold = Math.round(widthPixels * switchPercentage);
+        engine = new SwipeEngine(widthPixels, Utils.dpToPx(50, context), Utils.dpToPx(500, context));
+
+        swipeListener = new GestureDetector(context, new GestureListener());
+
+        if( Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN )
+        {
+            frameDropMonitor = new FrameDropMonitor(context);
+        }
     }
 
     /*******************
@@ -109,16 +233,165 @@ public class SwitchListener implements View.OnTouchListener
         this.debug = debug;
     }
 
+    /**
+     * Sets whether the switch animations should be built once and re-used for every switch,
+     * instead of allocating a new AnimatorSet, ObjectAnimators and listener for each one.
+     * <p>
+     * A single re-used animator runs from 0 to 1 and moves the Views itself, from where they are to
+     * where the switch leaves them, so only its start and end values change between switches.
+     * Steady-state swiping then allocates nothing in this class.
+     */
+    public void setReuseAnimators( boolean reuseAnimators )
+    {
+        this.reuseAnimators = reuseAnimators;
+    }
+
+    /**
+     * Sets the Executor that runs the background actions of an {@link AsyncSwitcher}. By default
+     * they are run one after another on {@link AsyncTask#SERIAL_EXECUTOR}.
+     */
+    public void setSwitchExecutor( Executor switchExecutor )
+    {
+        if( switchExecutor == null )
+        {
+            throw new IllegalArgumentException("Given Executor was null! Error!");
+        }
+
+        this.switchExecutor = switchExecutor;
+    }
+
+    /**
+     * Sets whether the Views are prepared (see {@link Switcher#prepareNextView}) once the UI
+     * thread is idle after a switch, instead of in the frame the switch animation ends in. The
+     * preparation is still done at once when the user starts a swipe, or another switch is started,
+     * before that.
+     */
+    public void setDeferPreparation( boolean deferPreparation )
+    {
+        this.deferPreparation = deferPreparation;
+
+        if( !deferPreparation )
+        {
+            flushPreparation();
+        }
+    }
+
+    /**
+     * Sets whether the previous-, showing- and next-backgrounds (and the video surface container,
+     * unless it is a SurfaceView or TextureView) are promoted to hardware layers while a swipe or
+     * switch animation is running. Every frame then only moves the layers instead of redrawing
+     * the Views. The layers are dropped again once the swipe and animations are over.
+     * <p>
+     * Views that already have a layer type set are left alone.
+     */
+    public void setHardwareLayers( boolean hardwareLayers )
+    {
+        this.hardwareLayers = hardwareLayers;
+
+        if( !hardwareLayers )
+        {
+            dropLayers();
+        }
+    }
+
+    /**
+     * Sets whether the drag translations are collected and applied once per frame, instead of
+     * for every touch event. Touch digitizers often report faster than the display refreshes, so
+     * this saves redundant invalidations, and the position shown can be extrapolated a little
+     * ahead (see {@link #setDragPrediction(int)}) to hide the touch latency.
+     * <p>
+     * Only available from Jelly Bean, where Choreographer is available. Ignored before that.
+     */
+    public void setFrameCoalescing( boolean frameCoalescing )
+    {
+        if( !frameCoalescing )
+        {
+            if( frameCoalescer != null )
+            {
+                frameCoalescer.cancel();
+                frameCoalescer = null;
+            }
+        }
+        else if( frameCoalescer == null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN )
+        {
+            frameCoalescer = new FrameCoalescer(applyDragFrame);
+        }
+    }
+
+    /**
+     * Sets the time (in milliseconds) the drag position is extrapolated ahead, from the velocity
+     * of the finger, when the frame coalescing is enabled. Zero disables the prediction.
+     */
+    public void setDragPrediction( int dragPrediction )
+    {
+        if( dragPrediction < 0 )
+        {
+            throw new IllegalArgumentException("Given drag prediction was negative! Error!");
+        }
+
+        this.dragPrediction = dragPrediction;
+    }
+
+    /**
+     * Sets the SwitchMetricsListener that receives the touch latency, animation durations and
+     * dropped frames of every swipe. Can be null to stop measuring.
+     * <p>
+     * Dropped frames are only measured from Jelly Bean, where Choreographer is available.
+     */
+    public void setMetricsListener( SwitchMetricsListener metricsListener )
+    {
+        this.metricsListener = metricsListener;
+
+        if( metricsListener == null && frameDropMonitor != null )
+        {
+            frameDropMonitor.stop();
+        }
+    }
+
+    /**
+     * Adds a SwipeObserver that is notified of the start and end of every swipe.
+     */
+    public void addSwipeObserver( SwipeObserver swipeObserver )
+    {
+        if( swipeObserver == null )
+        {
+            throw new IllegalArgumentException("Given SwipeObserver was null! Error!");
+        }
+
+        if( !swipeObservers.contains(swipeObserver) )
+        {
+            swipeObservers.add(swipeObserver);
+        }
+    }
+
+    public void removeSwipeObserver( SwipeObserver swipeObserver )
+    {
+        swipeObservers.remove(swipeObserver);
+    }
+
     /**
      * Set the percentage of the screen at switch a scroll (not Fling) release should perform
      * a switch to the next/previous.
      */
     public void setSwitchPercentage( float switchPercentage )
     {
-        this.switchPercentage = switchPercentage;
+        engine.setSwitchPercentage(switchPercentage);
+    }
+
+    /**
+     * Set the distance (in pixels) a fling has to cover to perform a switch.
+     */
+    public void setFlingDistanceThreshold( int flingDistanceThreshold )
+    {
+        engine.setFlingDistanceThreshold(flingDistanceThreshold);
+    }
 
-        // The Threshold that needs to be passed for the simple scroll to register a switch.
-        switchScrollThreshold = Math.round(widthPixels * switchPercentage);
+    /**
+     * Set the velocity (in pixels per second) a fling has to reach to perform a switch.
+     */
+    public void setFlingVelocityThreshold( int flingVelocityThreshold )
+    {
+        engine.setFlingVelocityThreshold(flingVelocityThreshold);
     }
 
 
@@ -134,6 +407,17 @@ public class SwitchListener implements View.OnTouchListener
      */
     public boolean onTouch( View viewTouched, MotionEvent event )
     {
+        // Feed every sample, including the ones batched into this event, to the velocity estimate.
+        if( state == STATE_DRAGGING && event.getActionMasked() == MotionEvent.ACTION_MOVE )
+        {
+            for( int i = 0; i < event.getHistorySize(); i++ )
+            {
+                engine.addSample(event.getHistoricalX(i), event.getHistoricalEventTime(i));
+            }
+
+            engine.addSample(event.getX(), event.getEventTime());
+        }
+
         // If the MotionEvent IS NOT handled, for example because the movement speed was too slow.
         if( !swipeListener.onTouchEvent(event) )
         {
@@ -159,27 +443,33 @@ public class SwitchListener implements View.OnTouchListener
      */
     public boolean onUp( MotionEvent event )
     {
-        if( touchInProgress && event.getAction() == MotionEvent.ACTION_UP )
+        if( state == STATE_DRAGGING && event.getAction() == MotionEvent.ACTION_UP )
         {
-            // A boolean to determine if the scrolling is passed the "switchScrollThreshold".
-            boolean switchPlayable = false;
+            resetSwipeEvent(performDecision(engine.release(switcher.hasNext(), switcher.hasPrevious())));
+        }
 
-            // Determine if the distanceScrolled is passed the "switchScrollThreshold"
-            if( distanceScrolled > switchScrollThreshold && switcher.hasNext() ) // Moved to the left.
-            {
-                moveBackgroundLeft(true);
-                switchPlayable = true;
-            }
-            else if( distanceScrolled < -switchScrollThreshold && switcher.hasPrevious() ) // Moved to the right.
-            {
-                moveBackgroundRight(true);
-                switchPlayable = true;
-            }
+        return true;
+    }
 
-            resetSwipeEvent(switchPlayable);
+    /**
+     * Performs the switch (if any) decided by the SwipeEngine.
+     *
+     * @return True if a switch was started, else false.
+     */
+    private boolean performDecision( int decision )
+    {
+        if( decision == SwipeEngine.DECISION_NEXT ) // Moved to the left.
+        {
+            moveBackgroundLeft(true);
+            return true;
+        }
+        else if( decision == SwipeEngine.DECISION_PREVIOUS ) // Moved to the right.
+        {
+            moveBackgroundRight(true);
+            return true;
         }
 
-        return true;
+        return false;
     }
 
     /**
@@ -187,10 +477,26 @@ public class SwitchListener implements View.OnTouchListener
      */
     public void initSwipeEvent()
     {
+        // The Views about to be shown must be prepared.
+        flushPreparation();
+
         // Set the STATE
-        touchInProgress = true;
-        distanceScrolled = 0;
+        state = STATE_DRAGGING;
+
+        for( int i = 0; i < swipeObservers.size(); i++ )
+        {
+            swipeObservers.get(i).onSwipeStarted();
+        }
 
+        positionBackgrounds();
+    }
+
+    /**
+     * Makes the previous-, showing- and next-backgrounds visible and places them at -screenWidth,
+     * 0 and +screenWidth.
+     */
+    private void positionBackgrounds()
+    {
         View previousBackground = viewTracker.getPreviousImage();
         View showingBackground = viewTracker.getShowingImage();
         View nextBackground = viewTracker.getNextImage();
@@ -213,6 +519,79 @@ public class SwitchListener implements View.OnTouchListener
         // Screen to the X of the screen.
         nextBackground.setVisibility(View.VISIBLE);
         nextBackground.setTranslationX(widthPixels);
+
+        if( hardwareLayers )
+        {
+            promoteLayers(previousBackground, showingBackground, nextBackground, videoSurfaceContainer);
+        }
+    }
+
+    /**
+     * Promotes the given Views to hardware layers, and drops the layers of any Views promoted
+     * earlier that are no longer among them (after a switch).
+     */
+    private void promoteLayers( View previousBackground, View showingBackground, View nextBackground,
+                                View videoSurfaceContainer )
+    {
+        for( int i = layeredCount - 1; i >= 0; i-- )
+        {
+            View view = layeredViews[i];
+
+            if( view != previousBackground && view != showingBackground && view != nextBackground
+                    && view != videoSurfaceContainer )
+            {
+                view.setLayerType(View.LAYER_TYPE_NONE, null);
+
+                layeredCount--;
+                layeredViews[i] = layeredViews[layeredCount];
+                layeredViews[layeredCount] = null;
+            }
+        }
+
+        promoteLayer(previousBackground);
+        promoteLayer(showingBackground);
+        promoteLayer(nextBackground);
+
+        // The content of a SurfaceView or TextureView can not be cached in a layer.
+        if( videoSurfaceContainer != null && !( videoSurfaceContainer instanceof SurfaceView )
+                && !( videoSurfaceContainer instanceof TextureView ) )
+        {
+            promoteLayer(videoSurfaceContainer);
+        }
+    }
+
+    private void promoteLayer( View view )
+    {
+        if( view.getLayerType() == View.LAYER_TYPE_NONE )
+        {
+            view.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+            layeredViews[layeredCount++] = view;
+        }
+    }
+
+    /**
+     * Drops the hardware layers of all the Views promoted by this class.
+     */
+    private void dropLayers()
+    {
+        for( int i = 0; i < layeredCount; i++ )
+        {
+            layeredViews[i].setLayerType(View.LAYER_TYPE_NONE, null);
+            layeredViews[i] = null;
+        }
+
+        layeredCount = 0;
+    }
+
+    /**
+     * Drops the hardware layers once no swipe or animation is running anymore.
+     */
+    private void dropLayersIfIdle()
+    {
+        if( state == STATE_IDLE && layeredCount > 0 )
+        {
+            dropLayers();
+        }
     }
 
 
@@ -226,19 +605,77 @@ public class SwitchListener implements View.OnTouchListener
      */
     public void resetSwipeEvent( boolean swipeSuccessful )
     {
+        if( frameCoalescer != null )
+        {
+            frameCoalescer.cancel();
+        }
+
         if( !swipeSuccessful )
         {
             moveBackgroundCenter();
         }
 
-        // Set the STATE
-        touchInProgress = false;
-        distanceScrolled = 0;
+        // Set the STATE, unless a switch or reset animation has taken over.
+        boolean settled = false;
+        if( state == STATE_DRAGGING )
+        {
+            state = STATE_IDLE;
+            settled = true;
+        }
+
+        // The drag is over, unless an animation already took over the measuring.
+        if( !monitoringAnimation )
+        {
+            stopFrameMonitor();
+        }
+
+        // Unless an animation took over, the layers are no longer needed.
+        dropLayersIfIdle();
+
+        float speed = Math.abs(engine.getVelocityX()) / widthPixels;
+        engine.reset();
+
+        for( int i = 0; i < swipeObservers.size(); i++ )
+        {
+            swipeObservers.get(i).onSwipeEnded(swipeSuccessful, speed);
+        }
+
+        if( settled )
+        {
+            notifySettled();
+        }
+    }
+
+    /**
+     * Tells the SwipeObservers that the Views have come to rest, if no animation is running.
+     */
+    private void notifySettled()
+    {
+        if( state != STATE_IDLE || grabbing )
+        {
+            return;
+        }
+
+        for( int i = 0; i < swipeObservers.size(); i++ )
+        {
+            swipeObservers.get(i).onSettled();
+        }
     }
 
 
     public void moveBackgroundLeft( final boolean userInitiated )
     {
+        if( queueStep(1, userInitiated) )
+        {
+            return;
+        }
+
+        if( reuseAnimators )
+        {
+            getReusableAnimation().start(MOVE_LEFT, userInitiated);
+            return;
+        }
+
         // Re-align backgrounds.
         final View previousBackground = viewTracker.getPreviousImage();
         final View showingBackground = viewTracker.getShowingImage();
@@ -252,18 +689,18 @@ public class SwitchListener implements View.OnTouchListener
 
 
         // MOVE LEFT - PREVIOUS BACKGROUND
-        ObjectAnimator moveX1 = ObjectAnimator.ofFloat(previousBackground, "x", -widthPixels * 2);
+        ObjectAnimator moveX1 = ObjectAnimator.ofFloat(previousBackground, View.X, -widthPixels * 2);
 
         // MOVE LEFT - SHOWING BACKGROUND
-        ObjectAnimator moveX2 = ObjectAnimator.ofFloat(showingBackground, "x", -widthPixels);
+        ObjectAnimator moveX2 = ObjectAnimator.ofFloat(showingBackground, View.X, -widthPixels);
 
         // MOVE LEFT - NEXT BACKGROUND
-        ObjectAnimator moveX3 = ObjectAnimator.ofFloat(nextBackground, "x", 0);
+        ObjectAnimator moveX3 = ObjectAnimator.ofFloat(nextBackground, View.X, 0);
 
         if( videoSurfaceContainer != null )
         {
             // MOVE LEFT - VIDEO SURFACE
-            ObjectAnimator moveXvideo = ObjectAnimator.ofFloat(videoSurfaceContainer, "x", -widthPixels);
+            ObjectAnimator moveXvideo = ObjectAnimator.ofFloat(videoSurfaceContainer, View.X, -widthPixels);
 
             // Play together
             animatorSet.playTogether(moveX1, moveX2, moveX3, moveXvideo);
@@ -275,52 +712,27 @@ public class SwitchListener implements View.OnTouchListener
         }
 
 
-        animatorSet.addListener(new Animator.AnimatorListener()
-        {
-            @Override
-            public void onAnimationStart( Animator animation )
-            {
-                resetInProgress = true;
-            }
-
-            @Override
-            public void onAnimationEnd( Animator animation )
-            {
-                previousBackground.setVisibility(View.GONE);
-                nextBackground.setVisibility(View.GONE);
-                resetInProgress = false;
-
-                if( videoSurfaceContainer != null )
-                {
-                    // This returns the Video to X=0.
-                    ObjectAnimator.ofFloat(videoSurfaceContainer, "x", 0).setDuration(1).start();
-                }
-
-                switcher.nextAction(userInitiated);
-                viewTracker.switchNext(); // This rotates the View to be in the correct order.
-
-                // Perform Prepare actions
-                switcher.prepareNextView(userInitiated);
-                switcher.preparePreviousView(userInitiated);
-            }
-
-            @Override
-            public void onAnimationCancel( Animator animation )
-            {
-                resetInProgress = false;
-            }
-
-            @Override
-            public void onAnimationRepeat( Animator animation )
-            {
-            }
-        });
-        animatorSet.start();
+        animatorSet.addListener(new SwitchAnimationListener(MOVE_LEFT, userInitiated,
+                previousBackground, nextBackground, videoSurfaceContainer));
+        startAnimation(animatorSet, MOVE_LEFT);
     }
 
 
     public void moveBackgroundCenter()
     {
+        // Finish any running animation, so its switch is not lost.
+        if( state == STATE_SETTLING )
+        {
+            dropQueuedSteps();
+            runningAnimation.end();
+        }
+
+        if( reuseAnimators )
+        {
+            getReusableAnimation().start(MOVE_CENTER, false);
+            return;
+        }
+
         // Re-align backgrounds.
         final View previousBackground = viewTracker.getPreviousImage();
         final View showingBackground = viewTracker.getShowingImage();
@@ -334,18 +746,18 @@ public class SwitchListener implements View.OnTouchListener
 
 
         // MOVE LEFT - PREVIOUS BACKGROUND
-        ObjectAnimator moveX1 = ObjectAnimator.ofFloat(previousBackground, "x", -widthPixels);
+        ObjectAnimator moveX1 = ObjectAnimator.ofFloat(previousBackground, View.X, -widthPixels);
 
         // MOVE CENTER - SHOWING BACKGROUND
-        ObjectAnimator moveX2 = ObjectAnimator.ofFloat(showingBackground, "x", 0);
+        ObjectAnimator moveX2 = ObjectAnimator.ofFloat(showingBackground, View.X, 0);
 
         // MOVE RIGHT - NEXT BACKGROUND
-        ObjectAnimator moveX3 = ObjectAnimator.ofFloat(nextBackground, "x", widthPixels);
+        ObjectAnimator moveX3 = ObjectAnimator.ofFloat(nextBackground, View.X, widthPixels);
 
         if( videoSurfaceContainer != null )
         {
             // MOVE CENTER - VIDEO SURFACE
-            ObjectAnimator moveXvideo = ObjectAnimator.ofFloat(videoSurfaceContainer, "x", 0);
+            ObjectAnimator moveXvideo = ObjectAnimator.ofFloat(videoSurfaceContainer, View.X, 0);
 
             // Play together
             animatorSet.playTogether(moveX1, moveX2, moveX3, moveXvideo);
@@ -357,35 +769,10 @@ public class SwitchListener implements View.OnTouchListener
         }
 
 
-        animatorSet.addListener(new Animator.AnimatorListener()
-        {
-            @Override
-            public void onAnimationStart( Animator animation )
-            {
-                resetInProgress = true;
-            }
-
-            @Override
-            public void onAnimationEnd( Animator animation )
-            {
-                previousBackground.setVisibility(View.GONE);
-                nextBackground.setVisibility(View.GONE);
-                resetInProgress = false;
-            }
-
-            @Override
-            public void onAnimationCancel( Animator animation )
-            {
-                resetInProgress = false;
-            }
-
-            @Override
-            public void onAnimationRepeat( Animator animation )
-            {
-            }
-        });
-        animatorSet.start();
-    }
+        animatorSet.addListener(new SwitchAnimationListener(MOVE_CENTER, false,
+                previousBackground, nextBackground, videoSurfaceContainer));
+        startAnimation(animatorSet, MOVE_CENTER);
+    }
 
 
     /**
@@ -395,6 +782,17 @@ public class SwitchListener implements View.OnTouchListener
      */
     public void moveBackgroundRight( final boolean userInitiated )
     {
+        if( queueStep(-1, userInitiated) )
+        {
+            return;
+        }
+
+        if( reuseAnimators )
+        {
+            getReusableAnimation().start(MOVE_RIGHT, userInitiated);
+            return;
+        }
+
         // Re-align backgrounds.
         final View previousBackground = viewTracker.getPreviousImage();
         final View showingBackground = viewTracker.getShowingImage();
@@ -408,18 +806,18 @@ public class SwitchListener implements View.OnTouchListener
 
 
         // MOVE RIGHT - PREVIOUS BACKGROUND
-        ObjectAnimator moveX1 = ObjectAnimator.ofFloat(previousBackground, "x", 0);
+        ObjectAnimator moveX1 = ObjectAnimator.ofFloat(previousBackground, View.X, 0);
 
         // MOVE RIGHT - SHOWING BACKGROUND
-        ObjectAnimator moveX2 = ObjectAnimator.ofFloat(showingBackground, "x", widthPixels);
+        ObjectAnimator moveX2 = ObjectAnimator.ofFloat(showingBackground, View.X, widthPixels);
 
         // MOVE RIGHT - NEXT BACKGROUND
-        ObjectAnimator moveX3 = ObjectAnimator.ofFloat(nextBackground, "x", widthPixels * 2);
+        ObjectAnimator moveX3 = ObjectAnimator.ofFloat(nextBackground, View.X, widthPixels * 2);
 
         if( videoSurfaceContainer != null )
         {
             // MOVE RIGHT - VIDEO SURFACE
-            ObjectAnimator moveXvideo = ObjectAnimator.ofFloat(videoSurfaceContainer, "x", widthPixels);
+            ObjectAnimator moveXvideo = ObjectAnimator.ofFloat(videoSurfaceContainer, View.X, widthPixels);
 
             // Play together
             animatorSet.playTogether(moveX1, moveX2, moveX3, moveXvideo);
@@ -431,47 +829,428 @@ public class SwitchListener implements View.OnTouchListener
         }
 
 
-        animatorSet.addListener(new Animator.AnimatorListener()
+        animatorSet.addListener(new SwitchAnimationListener(MOVE_RIGHT, userInitiated,
+                previousBackground, nextBackground, videoSurfaceContainer));
+        startAnimation(animatorSet, MOVE_RIGHT);
+    }
+
+    /**
+     * Jumps directly to the item at the given index, without animating through the items in
+     * between. The Switcher must be a {@link SeekableSwitcher}.
+     * <p>
+     * Without animation, all the Views are prepared for the new item at once. With animation, the
+     * Views are prepared for the item next to it and a single switch is animated from there. A
+     * running switch animation is finished first, and nothing happens while the user is dragging.
+     *
+     * @param index   The index of the item to show.
+     * @param animate Whether to animate the last step to the item.
+     *
+     * @return True if the seek was performed, false if the user is dragging.
+     */
+    public boolean seekTo( int index, boolean animate )
+    {
+        if( !( switcher instanceof SeekableSwitcher ) )
+        {
+            throw new IllegalStateException("Given Switcher does not support seeking! Error!");
+        }
+
+        SeekableSwitcher seekableSwitcher = (SeekableSwitcher) switcher;
+
+        // Throws if the index is out of bounds. In wrap-around mode this is the shortest way round.
+        int distance = seekableSwitcher.getSeekDistance(index);
+
+        if( state == STATE_DRAGGING )
         {
-            @Override
-            public void onAnimationStart( Animator animation )
+            return false;
+        }
+
+        // Finish any running animation (and drop the queued switches) before jumping.
+        dropQueuedSteps();
+
+        if( state == STATE_SETTLING )
+        {
+            runningAnimation.end();
+        }
+
+        // The animation that just ended might have moved the showing item.
+        distance = seekableSwitcher.getSeekDistance(index);
+
+        if( distance == 0 )
+        {
+            return true;
+        }
+
+        if( !animate )
+        {
+            flushPreparation();
+            seekableSwitcher.seekAction(index, false);
+            return true;
+        }
+
+        // Jump next to the item, and animate the last step.
+        if( Math.abs(distance) > 1 )
+        {
+            int step = distance > 0 ? 1 : -1;
+            seekableSwitcher.seekAction(seekableSwitcher.getCurrentIndex() + distance - step, false);
+        }
+
+        positionBackgrounds();
+
+        if( distance > 0 )
+        {
+            moveBackgroundLeft(false);
+        }
+        else
+        {
+            moveBackgroundRight(false);
+        }
+
+        return true;
+    }
+
+    /**
+     * Queues a switch if a switch animation is already running, so consecutive switches are
+     * merged into a multi-step advance instead of being dropped.
+     *
+     * @param step 1 for a switch to the next and -1 for a switch to the previous.
+     *
+     * @return True if the switch was queued, false if it should be performed now.
+     */
+    private boolean queueStep( int step, boolean userInitiated )
+    {
+        if( state != STATE_SETTLING )
+        {
+            return false;
+        }
+
+        // A reset animation is simply finished early.
+        if( runningDirection == MOVE_CENTER )
+        {
+            runningAnimation.end();
+            return false;
+        }
+
+        queuedSteps += step;
+        queuedUserInitiated = userInitiated;
+
+        return true;
+    }
+
+    /**
+     * Drops the queued switches, including one already posted.
+     */
+    private void dropQueuedSteps()
+    {
+        queuedSteps = 0;
+
+        if( queuedStepPosted )
+        {
+            queuedStepPosted = false;
+            uiHandler.removeCallbacks(queuedStep);
+        }
+    }
+
+    /**
+     * Performs the next queued switch, if any is left (and possible).
+     */
+    private void performQueuedStep()
+    {
+        if( queuedSteps > 0 )
+        {
+            queuedSteps--;
+
+            if( switcher.hasNext() )
             {
-                resetInProgress = true;
+                positionBackgrounds();
+                moveBackgroundLeft(queuedUserInitiated);
+                return;
             }
+        }
+        else if( queuedSteps < 0 )
+        {
+            queuedSteps++;
 
-            @Override
-            public void onAnimationEnd( Animator animation )
+            if( switcher.hasPrevious() )
             {
-                previousBackground.setVisibility(View.GONE);
-                nextBackground.setVisibility(View.GONE);
-                resetInProgress = false;
+                positionBackgrounds();
+                moveBackgroundRight(queuedUserInitiated);
+                return;
+            }
+        }
 
-                if( videoSurfaceContainer != null )
-                {
-                    // This returns the Video to X=0.
-                    ObjectAnimator.ofFloat(videoSurfaceContainer, "x", 0).setDuration(1).start();
-                }
+        // Nothing (more) to do.
+        queuedSteps = 0;
+    }
+
+    /**
+     * Sets the STATE to settling and starts the given switch (or reset) animation.
+     */
+    private void startAnimation( Animator animation, int direction )
+    {
+        // The Views about to be shown must be prepared.
+        flushPreparation();
+
+        state = STATE_SETTLING;
+        runningAnimation = animation;
+        runningDirection = direction;
+
+        if( metricsListener != null )
+        {
+            animationStartTime = SystemClock.uptimeMillis();
+            startFrameMonitor(true);
+        }
+
+        animation.start();
+    }
+
+    /**
+     * Grabs the running animation when the user touches the screen while it is settling. The
+     * animation is finished at once (performing its switch) and the X of the View that is now
+     * showing, at the moment it was grabbed, is returned so the swipe can continue from there.
+     */
+    private float grabRunningAnimation()
+    {
+        // The View that will be showing once the running animation has finished.
+        View incomingBackground;
+        if( runningDirection == MOVE_LEFT )
+        {
+            incomingBackground = viewTracker.getNextImage();
+        }
+        else if( runningDirection == MOVE_RIGHT )
+        {
+            incomingBackground = viewTracker.getPreviousImage();
+        }
+        else
+        {
+            incomingBackground = viewTracker.getShowingImage();
+        }
+
+        float grabbedX = incomingBackground.getTranslationX();
+
+        // The user has taken over, so any queued switches are dropped and the Views do not settle.
+        dropQueuedSteps();
+        grabbing = true;
+        runningAnimation.end();
+        grabbing = false;
+
+        return grabbedX;
+    }
+
+    /**
+     * Called at the end of every switch (or reset) animation.
+     *
+     * @param cancelled Whether the animation was cancelled, in which case no switch is performed.
+     */
+    private void onSwitchAnimationEnd( Animator animation, int direction, boolean userInitiated, boolean cancelled,
+                                       View previousBackground, View nextBackground, View videoSurfaceContainer )
+    {
+        previousBackground.setVisibility(View.GONE);
+        nextBackground.setVisibility(View.GONE);
 
-                switcher.previousAction(userInitiated);
-                viewTracker.switchPrevious(); // This rotates the View to be in the correct order.
+        if( runningAnimation == animation )
+        {
+            runningAnimation = null;
+            state = STATE_IDLE;
 
-                // Perform Prepare actions
-                switcher.prepareNextView(userInitiated);
-                switcher.preparePreviousView(userInitiated);
+            if( metricsListener != null )
+            {
+                metricsListener.onSwitchAnimation(SystemClock.uptimeMillis() - animationStartTime, animationDuration);
+                stopFrameMonitor();
             }
+        }
 
-            @Override
-            public void onAnimationCancel( Animator animation )
+        if( cancelled )
+        {
+            dropQueuedSteps();
+            dropLayersIfIdle();
+            notifySettled();
+            return;
+        }
+
+        if( direction == MOVE_CENTER )
+        {
+            dropLayersIfIdle();
+            notifySettled();
+            return;
+        }
+
+        if( videoSurfaceContainer != null )
+        {
+            // This returns the Video to X=0.
+            if( reuseAnimators )
             {
-                resetInProgress = false;
+                videoSurfaceContainer.setX(0);
             }
+            else
+            {
+                ObjectAnimator.ofFloat(videoSurfaceContainer, View.X, 0).setDuration(1).start();
+            }
+        }
 
+        if( direction == MOVE_LEFT )
+        {
+            switcher.nextAction(userInitiated);
+            performInBackground(true, userInitiated);
+            viewTracker.switchNext(); // This rotates the View to be in the correct order.
+        }
+        else
+        {
+            switcher.previousAction(userInitiated);
+            performInBackground(false, userInitiated);
+            viewTracker.switchPrevious(); // This rotates the View to be in the correct order.
+        }
+
+        // Perform Prepare actions, unless they can wait until the UI thread is idle.
+        if( deferPreparation && queuedSteps == 0 )
+        {
+            schedulePreparation(userInitiated);
+        }
+        else
+        {
+            prepareViews(userInitiated);
+        }
+
+        // The next queued switch is started from a new message, not from within the end of the
+        // animation that just finished (which the next switch might re-use).
+        if( queuedSteps != 0 )
+        {
+            if( !queuedStepPosted )
+            {
+                queuedStepPosted = true;
+                uiHandler.post(queuedStep);
+            }
+
+            return;
+        }
+
+        // The layers are no longer needed.
+        dropLayersIfIdle();
+        notifySettled();
+    }
+
+    /**
+     * Runs the background action of an AsyncSwitcher for the switch that just ended.
+     */
+    private void performInBackground( final boolean next, final boolean userInitiated )
+    {
+        if( !( switcher instanceof AsyncSwitcher ) )
+        {
+            return;
+        }
+
+        final AsyncSwitcher asyncSwitcher = (AsyncSwitcher) switcher;
+
+        switchExecutor.execute(new Runnable()
+        {
             @Override
-            public void onAnimationRepeat( Animator animation )
+            public void run()
             {
+                if( next )
+                {
+                    asyncSwitcher.nextActionInBackground(userInitiated);
+                }
+                else
+                {
+                    asyncSwitcher.previousActionInBackground(userInitiated);
+                }
             }
         });
-        animatorSet.start();
+    }
+
+    /**
+     * Prepares the Next and Previous Views, dropping any deferred preparation.
+     */
+    private void prepareViews( boolean userInitiated )
+    {
+        if( preparationPending )
+        {
+            preparationPending = false;
+            Looper.myQueue().removeIdleHandler(preparationIdleHandler);
+        }
+
+        switcher.prepareNextView(userInitiated);
+        switcher.preparePreviousView(userInitiated);
+    }
+
+    /**
+     * Defers the preparation of the Next and Previous Views until the UI thread is idle.
+     */
+    private void schedulePreparation( boolean userInitiated )
+    {
+        pendingUserInitiated = userInitiated;
+
+        if( !preparationPending )
+        {
+            preparationPending = true;
+            Looper.myQueue().addIdleHandler(preparationIdleHandler);
+        }
+    }
+
+    /**
+     * Performs a deferred preparation now, if there is one.
+     */
+    private void flushPreparation()
+    {
+        if( preparationPending )
+        {
+            prepareViews(pendingUserInitiated);
+        }
+    }
+
+    /**
+     * Starts counting the dropped frames of a drag or an animation, reporting those of the drag
+     * or animation measured before it.
+     */
+    private void startFrameMonitor( boolean animation )
+    {
+        stopFrameMonitor();
+
+        if( frameDropMonitor != null && metricsListener != null )
+        {
+            monitoringAnimation = animation;
+            frameDropMonitor.start();
+        }
+    }
+
+    /**
+     * Stops counting dropped frames, and reports them if a drag or an animation was measured.
+     */
+    private void stopFrameMonitor()
+    {
+        if( frameDropMonitor != null && frameDropMonitor.isRunning() )
+        {
+            int droppedFrames = frameDropMonitor.stop();
+
+            if( metricsListener != null )
+            {
+                metricsListener.onDroppedFrames(droppedFrames, monitoringAnimation);
+            }
+        }
+
+        monitoringAnimation = false;
+    }
+
+    /**
+     * Applies the collected drag translations, once per frame when frame coalescing is enabled.
+     */
+    private void onDragFrame()
+    {
+        // An animation might have taken over since the frame was scheduled.
+        if( state != STATE_DRAGGING )
+        {
+            return;
+        }
+
+        float position = engine.getPosition();
+        float predicted = engine.getPredictedPosition(SystemClock.uptimeMillis(), dragPrediction);
+
+        moveBackgrounds(predicted);
+
+        // Keep going until the prediction has settled on the finger.
+        if( predicted != position )
+        {
+            frameCoalescer.schedule();
+        }
     }
 
     /**
@@ -499,40 +1278,169 @@ public class SwitchListener implements View.OnTouchListener
     }
 
     /**
-     * Gesture controls will function 2 ways, either scrolling to above the change threshold or
-     * flinging to any direction from any position on the screen (regardless of scrolling).
+     * The listener of a (non re-used) switch animation, holding the Views it was started with.
      */
-    private final class GestureListener extends GestureDetector.SimpleOnGestureListener
+    private final class SwitchAnimationListener implements Animator.AnimatorListener
     {
-        private int FLING_DISTANCE_THRESHOLD;
-        private int FLING_VELOCITY_THRESHOLD;
+        private final int     direction;
+        private final boolean userInitiated;
+        private final View    previousBackground;
+        private final View    nextBackground;
+        private final View    videoSurfaceContainer;
 
-        public GestureListener( Context context )
+        private boolean cancelled = false;
+
+        public SwitchAnimationListener( int direction, boolean userInitiated, View previousBackground,
+                                        View nextBackground, View videoSurfaceContainer )
         {
-            FLING_DISTANCE_THRESHOLD = Utils.dpToPx(50, context);
-            FLING_VELOCITY_THRESHOLD = Utils.dpToPx(500, context);
+            this.direction = direction;
+            this.userInitiated = userInitiated;
+            this.previousBackground = previousBackground;
+            this.nextBackground = nextBackground;
+            this.videoSurfaceContainer = videoSurfaceContainer;
+        }
 
-            if( debug )
-            {
-                Log.d(getClass().getCanonicalName(), "Distance:" + FLING_DISTANCE_THRESHOLD);
-                Log.d(getClass().getCanonicalName(), "Velocity:" + FLING_VELOCITY_THRESHOLD);
-            }
+        @Override
+        public void onAnimationStart( Animator animation )
+        {
+        }
+
+        @Override
+        public void onAnimationEnd( Animator animation )
+        {
+            onSwitchAnimationEnd(animation, direction, userInitiated, cancelled,
+                    previousBackground, nextBackground, videoSurfaceContainer);
+        }
+
+        @Override
+        public void onAnimationCancel( Animator animation )
+        {
+            cancelled = true;
+        }
+
+        @Override
+        public void onAnimationRepeat( Animator animation )
+        {
         }
+    }
 
-        /*******************
-         * CONFIGURATION
-         *******************/
+    /**
+     * Returns the ReusableSwitchAnimation, building it the first time it is needed.
+     */
+    private ReusableSwitchAnimation getReusableAnimation()
+    {
+        if( reusableAnimation == null )
+        {
+            reusableAnimation = new ReusableSwitchAnimation();
+        }
+
+        return reusableAnimation;
+    }
 
-        public void setFlingDistanceThreshold( int FLING_DISTANCE_THRESHOLD )
+    /**
+     * A switch animation that is built once and re-targeted for every switch, so no Animators,
+     * keyframes or listeners are allocated per switch.
+     * <p>
+     * A single ValueAnimator runs linearly from 0 to 1 (its keyframes never change) and moves the
+     * Views itself, eased, from the X they had when it started to the X of the switch. It has no
+     * AnimatorListener, as those are copied on every start and end: the end is taken from the
+     * update with a fraction of 1, which is also made by {@link Animator#end()}.
+     */
+    private final class ReusableSwitchAnimation implements ValueAnimator.AnimatorUpdateListener
+    {
+        private final ValueAnimator animator;
+        private final Interpolator  interpolator = new AccelerateDecelerateInterpolator();
+        private final View          videoSurfaceContainer;
+
+        // The state of the animation currently running.
+        private int     direction;
+        private boolean userInitiated;
+        private boolean running = false;
+        private View    previousBackground;
+        private View    showingBackground;
+        private View    nextBackground;
+
+        // The X of each View when the animation started, and the X of the Showing background after.
+        private float previousStartX;
+        private float showingStartX;
+        private float nextStartX;
+        private float videoStartX;
+        private float showingEndX;
+
+        public ReusableSwitchAnimation()
         {
-            this.FLING_DISTANCE_THRESHOLD = FLING_DISTANCE_THRESHOLD;
+            videoSurfaceContainer = viewTracker.getVideoSurfaceContainer();
+
+            animator = ValueAnimator.ofFloat(0, 1);
+            animator.setInterpolator(new LinearInterpolator());
+            animator.addUpdateListener(this);
         }
 
-        public void setFlingVelocityThreshold( int FLING_VELOCITY_THRESHOLD )
+        /**
+         * Re-targets the animation at the current Views and starts it.
+         *
+         * @param direction     One of MOVE_LEFT, MOVE_CENTER or MOVE_RIGHT.
+         * @param userInitiated Passed on to the Switcher at the end of the animation.
+         */
+        public void start( int direction, boolean userInitiated )
         {
-            this.FLING_VELOCITY_THRESHOLD = FLING_VELOCITY_THRESHOLD;
+            this.direction = direction;
+            this.userInitiated = userInitiated;
+
+            previousBackground = viewTracker.getPreviousImage();
+            showingBackground = viewTracker.getShowingImage();
+            nextBackground = viewTracker.getNextImage();
+
+            previousStartX = previousBackground.getX();
+            showingStartX = showingBackground.getX();
+            nextStartX = nextBackground.getX();
+            videoStartX = videoSurfaceContainer != null ? videoSurfaceContainer.getX() : 0;
+
+            // The X of the Showing background after the animation, the others follow it.
+            showingEndX = direction == MOVE_LEFT ? -widthPixels : direction == MOVE_RIGHT ? widthPixels : 0;
+
+            running = true;
+
+            animator.setDuration(animationDuration);
+            startAnimation(animator, direction);
+        }
+
+        @Override
+        public void onAnimationUpdate( ValueAnimator animation )
+        {
+            if( !running )
+            {
+                return;
+            }
+
+            float fraction = animation.getAnimatedFraction();
+            float progress = interpolator.getInterpolation(fraction);
+
+            previousBackground.setX(previousStartX + ( ( showingEndX - widthPixels - previousStartX ) * progress ));
+            showingBackground.setX(showingStartX + ( ( showingEndX - showingStartX ) * progress ));
+            nextBackground.setX(nextStartX + ( ( showingEndX + widthPixels - nextStartX ) * progress ));
+
+            // The video surface (if any) always follows the Showing background.
+            if( videoSurfaceContainer != null )
+            {
+                videoSurfaceContainer.setX(videoStartX + ( ( showingEndX - videoStartX ) * progress ));
+            }
+
+            if( fraction >= 1 )
+            {
+                running = false;
+                onSwitchAnimationEnd(animator, direction, userInitiated, false,
+                        previousBackground, nextBackground, videoSurfaceContainer);
+            }
         }
+    }
 
+    /**
+     * Gesture controls will function 2 ways, either scrolling to above the change threshold or
+     * flinging to any direction from any position on the screen (regardless of scrolling).
+     */
+    private final class GestureListener extends GestureDetector.SimpleOnGestureListener
+    {
         /*********************
          * OnGestureListener
          *********************/
@@ -547,14 +1455,8 @@ public class SwitchListener implements View.OnTouchListener
         @Override
         public boolean onDown( MotionEvent e )
         {
-            // If the reset of background are in progress, skip any action.
-            if( resetInProgress )
-            {
-                return false;
-            }
-
             // First determine if another touch event has not already started, INVALID STATE.
-            if( touchInProgress )
+            if( state == STATE_DRAGGING )
             {
                 if( debug )
                 {
@@ -562,13 +1464,39 @@ public class SwitchListener implements View.OnTouchListener
                 }
 
                 // RESET
-                touchInProgress = false;
+                state = STATE_IDLE;
 
                 return false;
             }
 
+            // If a switch (or reset) animation is running, grab it and continue from its position.
+            float grabbedX = 0;
+            if( state == STATE_SETTLING )
+            {
+                grabbedX = grabRunningAnimation();
+            }
+            else
+            {
+                dropQueuedSteps();
+            }
+
             // Start Swipe event that will set the necessary variables.
             initSwipeEvent();
+            engine.down(e.getX(), e.getY(), e.getEventTime());
+
+            if( metricsListener != null )
+            {
+                touchDownTime = e.getEventTime();
+                firstMoveReported = false;
+                startFrameMonitor(false);
+            }
+
+            if( grabbedX != 0 )
+            {
+                engine.startAt(grabbedX);
+                moveBackgrounds(grabbedX);
+            }
+
             return true;
         }
 
@@ -591,24 +1519,33 @@ public class SwitchListener implements View.OnTouchListener
         @Override
         public boolean onScroll( MotionEvent e1, MotionEvent e2, float distanceX, float distanceY )
         {
-            // If the reset of background are in progress, skip any action.
-            if( resetInProgress )
-            {
-                return false;
-            }
-
-            if( touchInProgress )
+            if( state == STATE_DRAGGING )
             {
                 // The user has scrolled here, but has not let go or is performing a FLING.
 
-                // If the potential new distanceScrolled is not wider than width and -width.
-                if( widthPixels > ( distanceScrolled + distanceX )
-                        && ( distanceScrolled + distanceX ) > -widthPixels )
+                // Ignored if the scroll would move further than the width in either direction.
+                if( engine.scrollBy(distanceX) )
                 {
-                    // Register Distance scrolled (add to any previous scroll).
-                    distanceScrolled += distanceX;
+                    if( frameCoalescer != null )
+                    {
+                        frameCoalescer.schedule();
+                    }
+                    else
+                    {
+                        moveBackgrounds(engine.getPosition());
+                    }
 
-                    moveBackgrounds(-distanceScrolled);
+                    float progress = engine.getDistanceScrolled() / Math.max(1, engine.getSwitchScrollThreshold());
+                    for( int i = 0; i < swipeObservers.size(); i++ )
+                    {
+                        swipeObservers.get(i).onSwipeProgress(progress);
+                    }
+
+                    if( metricsListener != null && !firstMoveReported )
+                    {
+                        firstMoveReported = true;
+                        metricsListener.onTouchLatency(SystemClock.uptimeMillis() - touchDownTime);
+                    }
                 }
                 else
                 {
@@ -641,15 +1578,9 @@ public class SwitchListener implements View.OnTouchListener
         @Override
         public boolean onFling( MotionEvent e1, MotionEvent e2, float velocityX, float velocityY )
         {
-            // If the reset of background are in progress, skip any action.
-            if( resetInProgress )
-            {
-                return false;
-            }
-
             boolean swipeSuccessful = false;
 
-            if( touchInProgress )
+            if( state == STATE_DRAGGING )
             {
                 float distanceX = e2.getX() - e1.getX();
                 float distanceY = e2.getY() - e1.getY();
@@ -660,21 +1591,8 @@ public class SwitchListener implements View.OnTouchListener
                     Log.d(getClass().getCanonicalName(), "Velocity:" + Math.abs(velocityX));
                 }
 
-                if( Math.abs(distanceX) > Math.abs(distanceY)
-                        && Math.abs(distanceX) > FLING_DISTANCE_THRESHOLD
-                        && Math.abs(velocityX) > FLING_VELOCITY_THRESHOLD )
-                {
-                    if( velocityX < 0 && switcher.hasNext() )
-                    {
-                        moveBackgroundLeft(true);
-                        swipeSuccessful = true;
-                    }
-                    else if( velocityX > 0 && switcher.hasPrevious() )
-                    {
-                        moveBackgroundRight(true);
-                        swipeSuccessful = true;
-                    }
-                }
+                swipeSuccessful = performDecision(
+                        engine.fling(distanceX, distanceY, velocityX, switcher.hasNext(), switcher.hasPrevious()));
 
                 // Reset the swipe variable. If SwipeSuccessful false, re-align the backgrounds.
                 resetSwipeEvent(swipeSuccessful);
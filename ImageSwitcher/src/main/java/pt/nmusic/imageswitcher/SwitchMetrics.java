@@ -0,0 +1,115 @@
+package pt.nmusic.imageswitcher;
+
+/**
+ * A {@link SwitchMetricsListener} that aggregates the measurements into {@link Histogram}s. It
+ * does not allocate per measurement, so it can be left enabled in production builds.
+ * <p/>
+ * Use the same instance for the {@link SwitchListener} and the {@link ImageSwitcher}:
+ * <pre>
+ * SwitchMetrics metrics = new SwitchMetrics();
+ * switchListener.setMetricsListener(metrics);
+ * imageSwitcher.setMetricsListener(metrics);
+ * </pre>
+ */
+public class SwitchMetrics implements SwitchMetricsListener
+{
+    private final Histogram touchLatency           = Histogram.exponential(1024);
+    private final Histogram animationDuration      = Histogram.exponential(4096);
+    private final Histogram animationOverrun       = Histogram.exponential(4096);
+    private final Histogram dragDroppedFrames      = Histogram.exponential(256);
+    private final Histogram animationDroppedFrames = Histogram.exponential(256);
+    private final Histogram timeToImage            = Histogram.exponential(16384);
+
+    @Override
+    public void onTouchLatency( long latencyMs )
+    {
+        touchLatency.record(latencyMs);
+    }
+
+    @Override
+    public void onSwitchAnimation( long durationMs, long configuredDurationMs )
+    {
+        animationDuration.record(durationMs);
+        animationOverrun.record(Math.max(0, durationMs - configuredDurationMs));
+    }
+
+    @Override
+    public void onDroppedFrames( int droppedFrames, boolean animation )
+    {
+        if( animation )
+        {
+            animationDroppedFrames.record(droppedFrames);
+        }
+        else
+        {
+            dragDroppedFrames.record(droppedFrames);
+        }
+    }
+
+    @Override
+    public void onTimeToImage( long timeToImageMs )
+    {
+        timeToImage.record(timeToImageMs);
+    }
+
+    /**
+     * Resets all the histograms.
+     */
+    public void reset()
+    {
+        touchLatency.reset();
+        animationDuration.reset();
+        animationOverrun.reset();
+        dragDroppedFrames.reset();
+        animationDroppedFrames.reset();
+        timeToImage.reset();
+    }
+
+    /**
+     * The time (ms) from the touch-down of a swipe until its first move was applied.
+     */
+    public Histogram getTouchLatency()
+    {
+        return touchLatency;
+    }
+
+    /**
+     * The actual duration (ms) of the switch and reset animations.
+     */
+    public Histogram getAnimationDuration()
+    {
+        return animationDuration;
+    }
+
+    /**
+     * How much longer (ms) than configured the switch and reset animations took.
+     */
+    public Histogram getAnimationOverrun()
+    {
+        return animationOverrun;
+    }
+
+    /**
+     * The number of frames dropped per drag.
+     */
+    public Histogram getDragDroppedFrames()
+    {
+        return dragDroppedFrames;
+    }
+
+    /**
+     * The number of frames dropped per switch or reset animation.
+     */
+    public Histogram getAnimationDroppedFrames()
+    {
+        return animationDroppedFrames;
+    }
+
+    /**
+     * The time (ms) from a DraweeView being prepared until its final image was set.
+     */
+    public Histogram getTimeToImage()
+    {
+        return timeToImage;
+    }
+}
@@ -0,0 +1,37 @@
+package pt.nmusic.imageswitcher;
+
+/**
+ * Receives performance measurements from a {@link SwitchListener} and an {@link ImageSwitcher}.
+ * All the callbacks are made on the UI thread with primitive values only, so an implementation
+ * that does not allocate keeps the measuring allocation free. See {@link SwitchMetrics} for one
+ * that aggregates the measurements into histograms.
+ */
+public interface SwitchMetricsListener
+{
+    /**
+     * The time from the touch-down of a swipe until its first move was applied to the Views.
+     */
+    void onTouchLatency( long latencyMs );
+
+    /**
+     * A switch (or reset) animation has finished.
+     *
+     * @param durationMs           How long the animation actually took.
+     * @param configuredDurationMs The duration the animation was configured with.
+     */
+    void onSwitchAnimation( long durationMs, long configuredDurationMs );
+
+    /**
+     * The number of frames dropped during a drag or a switch (or reset) animation.
+     *
+     * @param droppedFrames The number of frames dropped.
+     * @param animation     False if the frames were dropped while the user was dragging, true if
+     *                      they were dropped while an animation was running.
+     */
+    void onDroppedFrames( int droppedFrames, boolean animation );
+
+    /**
+     * The time from a DraweeView being prepared until its final image was set.
+     */
+    void onTimeToImage( long timeToImageMs );
+}
@@ -0,0 +1,232 @@
+package pt.nmusic.imageswitcher;
+
+import java.util.ArrayList;
+
+/**
+ * Shares a single prefetch budget between all the {@link ImageSwitcher}s of the process, for
+ * screens that show many of them at once (for example in a RecyclerView).
+ * <p/>
+ * Every {@link ImagePrefetcher} registers with the shared instance by default. The coordinator
+ * caps the number of prefetch requests in flight across all of them, and the (estimated) bytes of
+ * the bitmaps in memory. Prefetches over the byte budget only go to the disk cache. When a request
+ * slot frees up, the prefetchers of switchers that are on screen get it before the ones that are
+ * not. Switchers whose DraweeViews are detached from the window, or scrolled off screen, do not
+ * prefetch at all: their prefetchers are paused, which also removes them from the queue, so the
+ * coordinator never holds on to a switcher that is gone.
+ * <p/>
+ * The loads of the DraweeViews themselves are never held back, as they are what the user is
+ * looking at: the request cap only applies to the prefetches. Their bytes are charged against the
+ * byte budget though, so the more images the DraweeViews hold the less is prefetched into memory.
+ * <p/>
+ * All the functions must be called on the UI thread.
+ */
+public class SwitcherCoordinator
+{
+    private static SwitcherCoordinator instance;
+
+    // The maximum number of prefetch requests in flight across all the prefetchers.
+    private int  maxConcurrentRequests = 4;
+    // The maximum (estimated) bytes of bitmaps prefetched into the bitmap cache.
+    private long maxBitmapBytes        = Runtime.getRuntime().maxMemory() / 8;
+
+    private int  inFlightCount = 0;
+    private long bitmapBytes   = 0;
+    // The (estimated) bytes of the images loaded into the DraweeViews.
+    private long viewBytes     = 0;
+
+    // The prefetchers waiting for a request slot, in the order they asked for one.
+    private final ArrayList<ImagePrefetcher> waiting = new ArrayList<ImagePrefetcher>();
+
+    /**
+     * Returns the SwitcherCoordinator shared by all the ImageSwitchers of the process.
+     */
+    public static SwitcherCoordinator getInstance()
+    {
+        if( instance == null )
+        {
+            instance = new SwitcherCoordinator();
+        }
+
+        return instance;
+    }
+
+    /*******************
+     * CONFIGURATION
+     *******************/
+
+    /**
+     * Sets the maximum number of prefetch requests in flight across all the ImageSwitchers.
+     */
+    public void setMaxConcurrentRequests( int maxConcurrentRequests )
+    {
+        if( maxConcurrentRequests < 1 )
+        {
+            throw new IllegalArgumentException("Given max concurrent requests was less than one! Error!");
+        }
+
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        dispatch();
+    }
+
+    /**
+     * Sets the maximum (estimated) bytes of the bitmaps loaded into the DraweeViews and prefetched
+     * into the bitmap cache across all the ImageSwitchers. By default this is an eighth of the
+     * maximum heap size.
+     */
+    public void setMaxBitmapBytes( long maxBitmapBytes )
+    {
+        this.maxBitmapBytes = maxBitmapBytes;
+    }
+
+    /**
+     * Returns the number of prefetch requests in flight across all the ImageSwitchers.
+     */
+    public int getInFlightCount()
+    {
+        return inFlightCount;
+    }
+
+    /**
+     * Returns the (estimated) bytes of the bitmaps currently prefetched into the bitmap cache.
+     */
+    public long getBitmapBytes()
+    {
+        return bitmapBytes;
+    }
+
+    /**
+     * Returns the (estimated) bytes of the images currently loaded into the DraweeViews.
+     */
+    public long getViewBytes()
+    {
+        return viewBytes;
+    }
+
+    /*******************
+     * BUDGET
+     *******************/
+
+    /**
+     * Takes a request slot for the given prefetcher. If there is none, the prefetcher is queued and
+     * its {@link ImagePrefetcher#onRequestSlotAvailable()} is called once there is one for it.
+     *
+     * @return True if the slot was taken, else false.
+     */
+    boolean acquireRequest( ImagePrefetcher prefetcher )
+    {
+        boolean onScreen = prefetcher.isOnScreen();
+
+        // On screen prefetchers go before any waiting off screen one.
+        if( inFlightCount < maxConcurrentRequests && ( onScreen || !hasWaitingOnScreen() ) )
+        {
+            inFlightCount++;
+            waiting.remove(prefetcher);
+            return true;
+        }
+
+        if( !waiting.contains(prefetcher) )
+        {
+            waiting.add(prefetcher);
+        }
+
+        return false;
+    }
+
+    /**
+     * Gives back a request slot taken with {@link #acquireRequest(ImagePrefetcher)}.
+     */
+    void releaseRequest()
+    {
+        if( inFlightCount > 0 )
+        {
+            inFlightCount--;
+        }
+
+        dispatch();
+    }
+
+    /**
+     * Removes the given prefetcher from the queue, for example when it is paused.
+     */
+    void removeWaiting( ImagePrefetcher prefetcher )
+    {
+        waiting.remove(prefetcher);
+    }
+
+    /**
+     * Reserves the given number of bytes of the bitmap budget.
+     *
+     * @return True if they were reserved, false if that would exceed the budget.
+     */
+    boolean reserveBitmapBytes( long bytes )
+    {
+        if( viewBytes + bitmapBytes + bytes > maxBitmapBytes )
+        {
+            return false;
+        }
+
+        bitmapBytes += bytes;
+        return true;
+    }
+
+    /**
+     * Gives back bytes reserved with {@link #reserveBitmapBytes(long)}.
+     */
+    void releaseBitmapBytes( long bytes )
+    {
+        bitmapBytes = Math.max(0, bitmapBytes - bytes);
+    }
+
+    /**
+     * Charges the bytes of an image loaded into a DraweeView against the bitmap budget. They are
+     * never refused, but leave less of the budget to the prefetches.
+     */
+    void chargeViewBytes( long bytes )
+    {
+        viewBytes += bytes;
+    }
+
+    /**
+     * Gives back bytes charged with {@link #chargeViewBytes(long)}.
+     */
+    void releaseViewBytes( long bytes )
+    {
+        viewBytes = Math.max(0, viewBytes - bytes);
+    }
+
+    /**
+     * Hands the free request slots to the waiting prefetchers, on screen ones first.
+     */
+    private void dispatch()
+    {
+        while( inFlightCount < maxConcurrentRequests && !waiting.isEmpty() )
+        {
+            ImagePrefetcher next = waiting.get(0);
+
+            for( int i = 0; i < waiting.size(); i++ )
+            {
+                if( waiting.get(i).isOnScreen() )
+                {
+                    next = waiting.get(i);
+                    break;
+                }
+            }
+
+            waiting.remove(next);
+            next.onRequestSlotAvailable();
+        }
+    }
+
+    private boolean hasWaitingOnScreen()
+    {
+        for( int i = 0; i < waiting.size(); i++ )
+        {
+            if( waiting.get(i).isOnScreen() )
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,437 @@
+package pt.nmusic.imageswitcher;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A persistent store of small previews of the images an {@link ImageSwitcher} has shown, so the
+ * first frame after a cold start shows a real preview instead of the placeholder.
+ * <p/>
+ * All the previews are packed into a single memory-mapped file: a header, an index of fixed size
+ * entries keyed by a 64-bit hash of the Uri, and one fixed size slot of raw RGB_565 pixels per
+ * entry. Reading a preview is a lookup in the index and a single copy of its pixels from the
+ * mapped file into a Bitmap (which can be re-used), without any file IO or decoding, so it is fast
+ * enough for the UI thread. Previews are written on a background thread.
+ * <p/>
+ * A Uri hashes to a home entry, and is stored in it or one of the few entries following it. When
+ * all of those are taken, the least recently written one is replaced.
+ * <p/>
+ * Create one ThumbnailStore per file, and share it between all the ImageSwitchers.
+ */
+public class ThumbnailStore
+{
+    private static final String TAG = "ThumbnailStore";
+
+    private static final int MAGIC   = 0x49535453;
+    private static final int VERSION = 1;
+
+    // The header holds the magic, version, entry count, max size and the write clock.
+    private static final int HEADER_SIZE = 32;
+    private static final int CLOCK_OFFSET = 16;
+    // An index entry holds the Uri hash, width, height and the clock value of its write.
+    private static final int ENTRY_SIZE = 16;
+    // The number of entries a Uri can be stored in, from its home entry on.
+    private static final int PROBE_COUNT = 8;
+
+    private static final int DEFAULT_ENTRY_COUNT = 256;
+    private static final int DEFAULT_MAX_SIZE    = 128;
+
+    // The number of pixel buffers kept for the previews waiting to be written.
+    private static final int MAX_STAGING_BUFFERS = 4;
+
+    private final int entryCount;
+    private final int maxSize;
+    private final int slotSize;
+    private final int dataOffset;
+
+    // Null if the file could not be mapped, the store is then always empty.
+    private final MappedByteBuffer buffer;
+
+    private final ThreadPoolExecutor writer = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+    // The pixels of the previews are copied into these until they are written, re-used.
+    private final ArrayDeque<ByteBuffer> stagingBuffers = new ArrayDeque<ByteBuffer>();
+
+    /**
+     * Opens (or creates) the default store in the cache directory, of 256 previews of at most
+     * 128 pixels.
+     */
+    public ThumbnailStore( Context context )
+    {
+        this(new File(context.getCacheDir(), "imageswitcher_thumbnails"), DEFAULT_ENTRY_COUNT, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Opens (or creates) the store in the given file. A file created with another entry count or
+     * max size is cleared.
+     *
+     * @param file       The file of the store.
+     * @param entryCount The maximum number of previews.
+     * @param maxSize    The maximum width and height of a preview, in pixels.
+     */
+    public ThumbnailStore( File file, int entryCount, int maxSize )
+    {
+        if( file == null )
+        {
+            throw new IllegalArgumentException("Given File was null! Error!");
+        }
+
+        if( entryCount < PROBE_COUNT || maxSize < 1 )
+        {
+            throw new IllegalArgumentException("Given ThumbnailStore size was invalid! Error!");
+        }
+
+        this.entryCount = entryCount;
+        this.maxSize = maxSize;
+        this.slotSize = maxSize * maxSize * 2;
+        this.dataOffset = HEADER_SIZE + ( entryCount * ENTRY_SIZE );
+        this.buffer = map(file, dataOffset + ( (long) entryCount * slotSize ));
+
+        this.writer.allowCoreThreadTimeOut(true);
+    }
+
+    private MappedByteBuffer map( File file, long size )
+    {
+        try
+        {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+
+            try
+            {
+                boolean valid = randomAccessFile.length() == size;
+
+                // A new (zeroed) file has no entries.
+                randomAccessFile.setLength(size);
+
+                MappedByteBuffer mapped = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+                if( !valid || mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION
+                        || mapped.getInt(8) != entryCount || mapped.getInt(12) != maxSize )
+                {
+                    for( int offset = 0; offset < dataOffset; offset += 4 )
+                    {
+                        mapped.putInt(offset, 0);
+                    }
+
+                    mapped.putInt(0, MAGIC);
+                    mapped.putInt(4, VERSION);
+                    mapped.putInt(8, entryCount);
+                    mapped.putInt(12, maxSize);
+                }
+
+                return mapped;
+            }
+            finally
+            {
+                // The mapping stays valid after the file is closed.
+                randomAccessFile.close();
+            }
+        }
+        catch( IOException e )
+        {
+            Log.w(TAG, "Could not map " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the maximum width and height of a preview.
+     */
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Returns a boolean indicating whether there is a preview of the given Uri.
+     */
+    public synchronized boolean contains( Uri uri )
+    {
+        return find(hash(uri)) >= 0;
+    }
+
+    /**
+     * Returns a new Bitmap with the preview of the given Uri, or null if there is none. Fast
+     * enough to be called on the UI thread.
+     */
+    public Bitmap get( Uri uri )
+    {
+        return get(uri, null);
+    }
+
+    /**
+     * Returns the preview of the given Uri, or null if there is none. The pixels are copied into
+     * the given Bitmap if it is a mutable RGB_565 Bitmap of the size of the preview (or, from
+     * KitKat, one large enough to be reconfigured to it), else into a new Bitmap. Fast enough to
+     * be called on the UI thread.
+     *
+     * @param reuse A Bitmap to copy the preview into, can be null.
+     */
+    public Bitmap get( Uri uri, Bitmap reuse )
+    {
+        long hash = hash(uri);
+        int width;
+        int height;
+
+        synchronized( this )
+        {
+            int entry = find(hash);
+
+            if( entry < 0 )
+            {
+                return null;
+            }
+
+            int entryOffset = HEADER_SIZE + ( entry * ENTRY_SIZE );
+            width = buffer.getShort(entryOffset + 8);
+            height = buffer.getShort(entryOffset + 10);
+        }
+
+        // Allocated (if needed) outside the lock, so a write is not held up by it.
+        Bitmap bitmap = reuseBitmap(reuse, width, height);
+
+        synchronized( this )
+        {
+            int entry = find(hash);
+
+            // Replaced in the meantime.
+            if( entry < 0 || buffer.getShort(HEADER_SIZE + ( entry * ENTRY_SIZE ) + 8) != width
+                    || buffer.getShort(HEADER_SIZE + ( entry * ENTRY_SIZE ) + 10) != height )
+            {
+                return null;
+            }
+
+            bitmap.copyPixelsFromBuffer(getSlot(entry, width * height * 2));
+        }
+
+        return bitmap;
+    }
+
+    /**
+     * Returns the given Bitmap, reconfigured if needed, if it can be re-used as an RGB_565 Bitmap
+     * of the given size, else a new Bitmap.
+     *
+     * @param reuse The Bitmap to re-use, can be null.
+     */
+    static Bitmap reuseBitmap( Bitmap reuse, int width, int height )
+    {
+        if( reuse != null && !reuse.isRecycled() && reuse.isMutable() )
+        {
+            if( reuse.getWidth() == width && reuse.getHeight() == height && reuse.getConfig() == Bitmap.Config.RGB_565 )
+            {
+                return reuse;
+            }
+
+            if( Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT && reuse.getAllocationByteCount() >= width * height * 2 )
+            {
+                reuse.reconfigure(width, height, Bitmap.Config.RGB_565);
+                return reuse;
+            }
+        }
+
+        return Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+    }
+
+    /**
+     * Stores the given preview of the given Uri on a background thread, replacing any previous
+     * preview of it. The Bitmap must be an RGB_565 Bitmap of at most the max size. Its pixels are
+     * copied before this returns, so the Bitmap can be re-used right away.
+     */
+    public void put( final Uri uri, final Bitmap preview )
+    {
+        if( buffer == null )
+        {
+            return;
+        }
+
+        if( preview.getConfig() != Bitmap.Config.RGB_565 || preview.getWidth() > maxSize || preview.getHeight() > maxSize )
+        {
+            throw new IllegalArgumentException("Given preview was not an RGB_565 Bitmap within the max size! Error!");
+        }
+
+        final long hash = hash(uri);
+        final int width = preview.getWidth();
+        final int height = preview.getHeight();
+        final ByteBuffer pixels = obtainStagingBuffer();
+
+        preview.copyPixelsToBuffer(pixels);
+        pixels.flip();
+
+        writer.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                write(hash, width, height, pixels);
+                releaseStagingBuffer(pixels);
+            }
+        });
+    }
+
+    private ByteBuffer obtainStagingBuffer()
+    {
+        synchronized( stagingBuffers )
+        {
+            ByteBuffer pixels = stagingBuffers.poll();
+
+            return pixels != null ? pixels : ByteBuffer.allocate(slotSize);
+        }
+    }
+
+    private void releaseStagingBuffer( ByteBuffer pixels )
+    {
+        pixels.clear();
+
+        synchronized( stagingBuffers )
+        {
+            if( stagingBuffers.size() < MAX_STAGING_BUFFERS )
+            {
+                stagingBuffers.add(pixels);
+            }
+        }
+    }
+
+    /**
+     * Removes all the previews.
+     */
+    public synchronized void clear()
+    {
+        if( buffer == null )
+        {
+            return;
+        }
+
+        for( int offset = HEADER_SIZE; offset < dataOffset; offset += 4 )
+        {
+            buffer.putInt(offset, 0);
+        }
+    }
+
+    private synchronized void write( long hash, int width, int height, ByteBuffer pixels )
+    {
+        int entry = find(hash);
+
+        if( entry < 0 )
+        {
+            entry = findFree(hash);
+        }
+
+        int entryOffset = HEADER_SIZE + ( entry * ENTRY_SIZE );
+        int clock = buffer.getInt(CLOCK_OFFSET) + 1;
+
+        // The entry is invalid while its pixels are written, in case the process dies meanwhile.
+        buffer.putLong(entryOffset, 0);
+
+        getSlot(entry, pixels.remaining()).put(pixels);
+
+        buffer.putShort(entryOffset + 8, (short) width);
+        buffer.putShort(entryOffset + 10, (short) height);
+        buffer.putInt(entryOffset + 12, clock);
+        buffer.putInt(CLOCK_OFFSET, clock);
+        buffer.putLong(entryOffset, hash);
+    }
+
+    /**
+     * Returns the entry holding the given hash, or -1 if there is none.
+     */
+    private int find( long hash )
+    {
+        if( buffer == null )
+        {
+            return -1;
+        }
+
+        int home = getHome(hash);
+
+        for( int probe = 0; probe < PROBE_COUNT; probe++ )
+        {
+            int entry = ( home + probe ) % entryCount;
+
+            if( buffer.getLong(HEADER_SIZE + ( entry * ENTRY_SIZE )) == hash )
+            {
+                return entry;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the first empty entry for the given hash, or the least recently written one.
+     */
+    private int findFree( long hash )
+    {
+        int home = getHome(hash);
+        int oldest = home;
+        int oldestClock = Integer.MAX_VALUE;
+
+        for( int probe = 0; probe < PROBE_COUNT; probe++ )
+        {
+            int entry = ( home + probe ) % entryCount;
+            int entryOffset = HEADER_SIZE + ( entry * ENTRY_SIZE );
+
+            if( buffer.getLong(entryOffset) == 0 )
+            {
+                return entry;
+            }
+
+            int clock = buffer.getInt(entryOffset + 12);
+            if( clock < oldestClock )
+            {
+                oldest = entry;
+                oldestClock = clock;
+            }
+        }
+
+        return oldest;
+    }
+
+    /**
+     * Returns a view of the pixels of the given entry, without copying them.
+     */
+    private ByteBuffer getSlot( int entry, int length )
+    {
+        ByteBuffer slot = buffer.duplicate();
+        int offset = dataOffset + ( entry * slotSize );
+
+        slot.limit(offset + length);
+        slot.position(offset);
+
+        return slot;
+    }
+
+    private int getHome( long hash )
+    {
+        return (int) ( ( hash >>> 1 ) % entryCount );
+    }
+
+    /**
+     * Returns the 64-bit FNV-1a hash of the Uri, never 0 as that marks an empty entry.
+     */
+    private static long hash( Uri uri )
+    {
+        String string = uri.toString();
+        long hash = 0xcbf29ce484222325L;
+
+        for( int i = 0; i < string.length(); i++ )
+        {
+            hash ^= string.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        return hash == 0 ? 1 : hash;
+    }
+}
@@ -0,0 +1,257 @@
+package pt.nmusic.imageswitcher;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+
+/**
+ * Draws a very large image from a downsampled base layer, with the visible part refined by tiles
+ * decoded at (at least) screen resolution while it is refining. The tiles come from the
+ * {@link TiledImageLoader}, which decodes them in the background and invalidates the Drawable as
+ * they arrive.
+ * <p/>
+ * The Drawable has no intrinsic size, so an ImageView gives it its own bounds, and the image is
+ * scaled into them itself (cropped to fill them, or fitted inside them).
+ */
+final class TiledImageDrawable extends Drawable
+{
+    // The size of a tile, in decoded pixels.
+    static final int TILE_SIZE = 512;
+
+    private final TiledImageLoader    loader;
+    private final int                 imageId;
+    private final BitmapRegionDecoder decoder;
+
+    private final int     imageWidth;
+    private final int     imageHeight;
+    private final Bitmap  baseLayer;
+    private final int     baseSampleSize;
+    private final boolean centerCrop;
+
+    private final Paint paint      = new Paint(Paint.FILTER_BITMAP_FLAG);
+    // Re-used for every draw.
+    private final RectF destRect   = new RectF();
+
+    // Read on the decoding threads, to skip the tiles that are no longer needed.
+    private volatile boolean refining = false;
+    private volatile boolean released = false;
+
+    /**
+     * @param imageId        The id of the image, the tiles are cached under it.
+     * @param decoder        The BitmapRegionDecoder of the image, the tiles are decoded with it.
+     * @param baseLayer      The whole image, decoded at the given sample size.
+     * @param baseSampleSize The sample size of the base layer.
+     * @param centerCrop     Whether the image is cropped to fill the bounds, else it is fitted
+     *                       inside them.
+     */
+    TiledImageDrawable( TiledImageLoader loader, int imageId, BitmapRegionDecoder decoder, Bitmap baseLayer, int baseSampleSize, boolean centerCrop )
+    {
+        this.loader = loader;
+        this.imageId = imageId;
+        this.decoder = decoder;
+        this.imageWidth = decoder.getWidth();
+        this.imageHeight = decoder.getHeight();
+        this.baseLayer = baseLayer;
+        this.baseSampleSize = baseSampleSize;
+        this.centerCrop = centerCrop;
+    }
+
+    @Override
+    public void draw( Canvas canvas )
+    {
+        Rect bounds = getBounds();
+
+        if( bounds.isEmpty() )
+        {
+            return;
+        }
+
+        float scaleX = bounds.width() / (float) imageWidth;
+        float scaleY = bounds.height() / (float) imageHeight;
+        float scale = centerCrop ? Math.max(scaleX, scaleY) : Math.min(scaleX, scaleY);
+
+        float left = bounds.left + ( ( bounds.width() - ( imageWidth * scale ) ) / 2 );
+        float top = bounds.top + ( ( bounds.height() - ( imageHeight * scale ) ) / 2 );
+
+        int saveCount = canvas.save();
+        canvas.clipRect(bounds);
+
+        destRect.set(left, top, left + ( imageWidth * scale ), top + ( imageHeight * scale ));
+        canvas.drawBitmap(baseLayer, null, destRect, paint);
+
+        if( refining )
+        {
+            drawTiles(canvas, bounds, scale, left, top);
+        }
+
+        canvas.restoreToCount(saveCount);
+    }
+
+    /**
+     * Draws the tiles covering the visible part of the image over the base layer, at the largest
+     * sample size that is still at least at screen resolution. Missing tiles are requested from
+     * the loader, the base layer shows through until they arrive.
+     */
+    private void drawTiles( Canvas canvas, Rect bounds, float scale, float left, float top )
+    {
+        int level = getLevel(scale);
+
+        // The base layer is already detailed enough.
+        if( level >= baseSampleSize )
+        {
+            return;
+        }
+
+        // The visible part of the image, in image pixels.
+        int visibleLeft = Math.max(0, (int) ( ( bounds.left - left ) / scale ));
+        int visibleTop = Math.max(0, (int) ( ( bounds.top - top ) / scale ));
+        int visibleRight = Math.min(imageWidth, (int) Math.ceil(( bounds.right - left ) / scale));
+        int visibleBottom = Math.min(imageHeight, (int) Math.ceil(( bounds.bottom - top ) / scale));
+
+        int tileSpan = TILE_SIZE * level;
+
+        for( int row = visibleTop / tileSpan; row * tileSpan < visibleBottom; row++ )
+        {
+            for( int column = visibleLeft / tileSpan; column * tileSpan < visibleRight; column++ )
+            {
+                Bitmap tile = loader.getTile(this, level, column, row);
+
+                if( tile != null )
+                {
+                    int tileLeft = column * tileSpan;
+                    int tileTop = row * tileSpan;
+                    int tileRight = Math.min(imageWidth, tileLeft + tileSpan);
+                    int tileBottom = Math.min(imageHeight, tileTop + tileSpan);
+
+                    destRect.set(left + ( tileLeft * scale ), top + ( tileTop * scale ),
+                            left + ( tileRight * scale ), top + ( tileBottom * scale ));
+                    canvas.drawBitmap(tile, null, destRect, paint);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the largest power of two sample size that still decodes the image at (at least) the
+     * given scale.
+     */
+    private static int getLevel( float scale )
+    {
+        int level = 1;
+
+        while( level * 2 * scale <= 1 )
+        {
+            level *= 2;
+        }
+
+        return level;
+    }
+
+    /**
+     * Decodes a single tile, on a decoding thread.
+     *
+     * @return The tile, or null if it is no longer needed or could not be decoded.
+     */
+    Bitmap decodeTile( int level, int column, int row )
+    {
+        int tileSpan = TILE_SIZE * level;
+        Rect region = new Rect(column * tileSpan, row * tileSpan,
+                Math.min(imageWidth, ( column + 1 ) * tileSpan), Math.min(imageHeight, ( row + 1 ) * tileSpan));
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = level;
+
+        synchronized( decoder )
+        {
+            if( released || !refining || decoder.isRecycled() )
+            {
+                return null;
+            }
+
+            try
+            {
+                return decoder.decodeRegion(region, options);
+            }
+            catch( OutOfMemoryError e )
+            {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Sets whether the visible part of the image is refined with tiles. Without, only the base
+     * layer is drawn.
+     */
+    void setRefining( boolean refining )
+    {
+        if( this.refining != refining )
+        {
+            this.refining = refining;
+            invalidateSelf();
+        }
+    }
+
+    boolean isRefining()
+    {
+        return refining && !released;
+    }
+
+    /**
+     * Stops drawing and decoding tiles. The BitmapRegionDecoder is recycled separately, with
+     * {@link #recycleDecoder()}.
+     */
+    void release()
+    {
+        released = true;
+    }
+
+    /**
+     * Recycles the BitmapRegionDecoder, on a decoding thread as it waits for any tile it is
+     * decoding.
+     */
+    void recycleDecoder()
+    {
+        synchronized( decoder )
+        {
+            decoder.recycle();
+        }
+    }
+
+    boolean isReleased()
+    {
+        return released;
+    }
+
+    int getImageId()
+    {
+        return imageId;
+    }
+
+    @Override
+    public void setAlpha( int alpha )
+    {
+        paint.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter( ColorFilter colorFilter )
+    {
+        paint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity()
+    {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
@@ -0,0 +1,868 @@
+package pt.nmusic.imageswitcher;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.DisplayMetrics;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link ImageLoader} for very large local images, such as scanned documents and panoramas,
+ * that would take seconds (or all the memory) to decode at once. Every other image is loaded by
+ * the ImageLoader it wraps.
+ * <p/>
+ * Local images (content, file and android.resource Uris) of at least the minimum number of pixels
+ * are opened with a BitmapRegionDecoder. Every ImageView only keeps a cheap downsampled base
+ * layer of its image, except the Showing one: the visible part of its image is refined with tiles
+ * decoded at screen resolution, which are drawn as they arrive. The tiles are kept in a memory
+ * cache keyed by the image, sample size and tile, so they are not decoded again when the user
+ * comes back to the image.
+ * <p/>
+ * Whether a local image is large is only known once its bounds have been decoded, which is done
+ * (once per image) before it is loaded or prefetched, so a large image is never fully decoded by
+ * the other loader. Opening images, decoding tiles and decoding bounds share a pool of threads,
+ * ordered by the priority of the requests.
+ * <p/>
+ * Large images are drawn cropped to fill the ImageView (or fitted inside it, see
+ * {@link #setCenterCrop}) regardless of the scale type of the ImageView.
+ * <p/>
+ * All the functions must be called on the UI thread.
+ */
+public class TiledImageLoader implements RefiningImageLoader
+{
+    private static final int DEFAULT_THREAD_COUNT = 2;
+
+    // The image id of the local images that are not large.
+    private static final int NOT_LARGE = 0;
+
+    private final ImageLoader     imageLoader;
+    private final ContentResolver contentResolver;
+    private final DisplayMetrics  displayMetrics;
+    private final Handler         uiHandler = new Handler(Looper.getMainLooper());
+
+    private final ThreadPoolExecutor     executor;
+    private final LruCache<Long, Bitmap> tileCache;
+
+    // The tiles being decoded, per tile key.
+    private final HashSet<Long>             pendingTiles = new HashSet<Long>();
+    // The load of each ImageView.
+    private final HashMap<ImageView, Slot>  slots        = new HashMap<ImageView, Slot>();
+    // The id of the local images whose bounds are known, per Uri, or NOT_LARGE for the images
+    // that are not large. The tiles are cached under the id of their image.
+    private final LruCache<String, Integer> imageIds     = new LruCache<String, Integer>(256);
+
+    private int nextImageId = NOT_LARGE + 1;
+    // The order the tasks were queued in, to run tasks of the same priority in order.
+    private long sequence = 0;
+
+    private ImageView showingView;
+
+    // Images of at least this many pixels are decoded in tiles.
+    private int     minPixels  = 16 * 1000 * 1000;
+    private boolean centerCrop = true;
+
+    /**
+     * Creates a TiledImageLoader with a tile cache of an eighth of the maximum heap size.
+     *
+     * @param context     Any Context, only its application Context is kept.
+     * @param imageLoader The ImageLoader for all the images that are not large.
+     */
+    public TiledImageLoader( Context context, ImageLoader imageLoader )
+    {
+        this(context, imageLoader, (int) ( Runtime.getRuntime().maxMemory() / 8 ));
+    }
+
+    /**
+     * @param context     Any Context, only its application Context is kept.
+     * @param imageLoader The ImageLoader for all the images that are not large.
+     * @param cacheBytes  The maximum bytes of the tiles kept in the tile cache.
+     */
+    public TiledImageLoader( Context context, ImageLoader imageLoader, int cacheBytes )
+    {
+        if( context == null )
+        {
+            throw new IllegalArgumentException("Given Context was null! Error!");
+        }
+
+        if( imageLoader == null )
+        {
+            throw new IllegalArgumentException("Given ImageLoader was null! Error!");
+        }
+
+        this.imageLoader = imageLoader;
+        this.contentResolver = context.getApplicationContext().getContentResolver();
+        this.displayMetrics = context.getResources().getDisplayMetrics();
+
+        this.tileCache = new LruCache<Long, Bitmap>(cacheBytes)
+        {
+            @Override
+            protected int sizeOf( Long key, Bitmap tile )
+            {
+                return tile.getByteCount();
+            }
+        };
+
+        this.executor = new ThreadPoolExecutor(DEFAULT_THREAD_COUNT, DEFAULT_THREAD_COUNT, 1, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( Runnable runnable )
+            {
+                return new Thread(runnable, "TiledImageLoader");
+            }
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /*******************
+     * CONFIGURATION
+     *******************/
+
+    /**
+     * Sets the number of pixels from which a local image is decoded in tiles. By default this is
+     * 16 megapixels.
+     */
+    public void setMinPixels( int minPixels )
+    {
+        this.minPixels = minPixels;
+    }
+
+    /**
+     * Sets whether large images are cropped to fill the ImageView, like the centerCrop scale type.
+     * This is the default. Else they are fitted inside it, like fitCenter.
+     */
+    public void setCenterCrop( boolean centerCrop )
+    {
+        this.centerCrop = centerCrop;
+    }
+
+    /*******************
+     * LOADING
+     *******************/
+
+    @Override
+    public void load( ImageView view, Uri uri, Uri thumbnailUri, int width, int height, int priority, Callback callback )
+    {
+        release(view);
+
+        Slot slot = new Slot(view, uri, thumbnailUri, width, height, priority, callback);
+        slots.put(view, slot);
+
+        Integer imageId = isLocal(uri) ? imageIds.get(uri.toString()) : Integer.valueOf(NOT_LARGE);
+
+        if( imageId != null && imageId == NOT_LARGE )
+        {
+            slot.delegated = true;
+            imageLoader.load(view, uri, thumbnailUri, width, height, priority, callback);
+            return;
+        }
+
+        // Whether the image is large is only known once it is opened.
+        view.setImageDrawable(null);
+        executor.execute(new OpenTask(slot, sequence++));
+    }
+
+    @Override
+    public void release( ImageView view )
+    {
+        Slot slot = slots.remove(view);
+
+        if( slot == null )
+        {
+            return;
+        }
+
+        slot.cancelled = true;
+
+        if( slot.delegated )
+        {
+            imageLoader.release(view);
+        }
+        else if( slot.drawable != null )
+        {
+            view.setImageDrawable(null);
+            releaseDrawable(slot.drawable);
+            slot.callback.onRelease();
+        }
+    }
+
+    @Override
+    public Request prefetch( Uri uri, int width, int height, int priority, boolean toMemory, Callback callback )
+    {
+        Integer imageId = isLocal(uri) ? imageIds.get(uri.toString()) : Integer.valueOf(NOT_LARGE);
+
+        if( imageId == null )
+        {
+            // Never let the other loader fully decode an image that might be large.
+            BoundsRequest request = new BoundsRequest(uri, width, height, priority, toMemory, callback, sequence++);
+            executor.execute(request);
+
+            return request;
+        }
+
+        if( imageId == NOT_LARGE )
+        {
+            return imageLoader.prefetch(uri, width, height, priority, toMemory, callback);
+        }
+
+        // The base layer of a large image is decoded when it is loaded, nothing to prefetch.
+        FinishedRequest request = new FinishedRequest(callback);
+        uiHandler.post(request);
+
+        return request;
+    }
+
+    @Override
+    public void clearMemoryCaches()
+    {
+        tileCache.evictAll();
+        imageLoader.clearMemoryCaches();
+    }
+
+    @Override
+    public void setShowing( ImageView view )
+    {
+        if( showingView == view )
+        {
+            return;
+        }
+
+        showingView = view;
+
+        for( Slot slot : slots.values() )
+        {
+            if( slot.drawable != null )
+            {
+                slot.drawable.setRefining(slot.view == view);
+            }
+        }
+
+        if( imageLoader instanceof RefiningImageLoader )
+        {
+            ( (RefiningImageLoader) imageLoader ).setShowing(view);
+        }
+    }
+
+    /**
+     * Called on the UI thread once the image of a Slot has been opened.
+     *
+     * @param large     Whether the image is large, only meaningful if it did not fail.
+     * @param decoder   The BitmapRegionDecoder of a large image, else null. Also null if the Slot
+     *                  was cancelled before it was created.
+     * @param baseLayer The base layer of a large image, else null.
+     * @param failed    Whether the image could not be opened.
+     */
+    private void onOpened( Slot slot, boolean large, BitmapRegionDecoder decoder, Bitmap baseLayer, int baseSampleSize, boolean failed )
+    {
+        if( !failed && !large )
+        {
+            imageIds.put(slot.uri.toString(), NOT_LARGE);
+        }
+
+        if( slot.cancelled )
+        {
+            if( decoder != null )
+            {
+                recycleDecoder(decoder);
+            }
+
+            return;
+        }
+
+        if( decoder == null && !failed )
+        {
+            slot.delegated = true;
+            imageLoader.load(slot.view, slot.uri, slot.thumbnailUri, slot.width, slot.height, slot.priority, slot.callback);
+            return;
+        }
+
+        slot.callback.onSubmit();
+
+        if( failed )
+        {
+            slot.callback.onFailed();
+            return;
+        }
+
+        slot.drawable = new TiledImageDrawable(this, getImageId(slot.uri), decoder, baseLayer, baseSampleSize, centerCrop);
+        slot.drawable.setRefining(slot.view == showingView);
+        slot.view.setImageDrawable(slot.drawable);
+
+        slot.callback.onCompleted();
+    }
+
+    /**
+     * Returns the id of the given large image, assigning it a new one if it has none.
+     */
+    private int getImageId( Uri uri )
+    {
+        Integer imageId = imageIds.get(uri.toString());
+
+        if( imageId == null || imageId == NOT_LARGE )
+        {
+            imageId = nextImageId++;
+            imageIds.put(uri.toString(), imageId);
+        }
+
+        return imageId;
+    }
+
+    /**
+     * Returns the given tile from the tile cache, or queues it to be decoded and returns null. The
+     * Drawable is invalidated once the tile has been decoded.
+     */
+    Bitmap getTile( TiledImageDrawable drawable, int level, int column, int row )
+    {
+        long key = getTileKey(drawable.getImageId(), level, column, row);
+        Bitmap tile = tileCache.get(key);
+
+        if( tile == null && pendingTiles.add(key) )
+        {
+            executor.execute(new TileTask(drawable, key, level, column, row, sequence++));
+        }
+
+        return tile;
+    }
+
+    /**
+     * Returns the key of a tile, the image id in the upper 32 bits and the sample size (as a power
+     * of two), column and row in the lower 32. Images are at most 2^14 tiles wide and high.
+     */
+    private static long getTileKey( int imageId, int level, int column, int row )
+    {
+        return ( (long) imageId << 32 ) | ( (long) Integer.numberOfTrailingZeros(level) << 28 ) | ( column << 14 ) | row;
+    }
+
+    /**
+     * Called on the UI thread when a tile has been decoded.
+     *
+     * @param tile The tile, or null if it is no longer needed or could not be decoded.
+     */
+    private void onTileDecoded( TiledImageDrawable drawable, long key, Bitmap tile )
+    {
+        pendingTiles.remove(key);
+
+        if( tile != null )
+        {
+            tileCache.put(key, tile);
+
+            if( drawable.isRefining() )
+            {
+                drawable.invalidateSelf();
+            }
+        }
+    }
+
+    private void releaseDrawable( final TiledImageDrawable drawable )
+    {
+        drawable.release();
+
+        executor.execute(new PriorityTask(PRIORITY_MEDIUM, sequence++)
+        {
+            @Override
+            public void run()
+            {
+                drawable.recycleDecoder();
+            }
+        });
+    }
+
+    private void recycleDecoder( final BitmapRegionDecoder decoder )
+    {
+        executor.execute(new PriorityTask(PRIORITY_MEDIUM, sequence++)
+        {
+            @Override
+            public void run()
+            {
+                decoder.recycle();
+            }
+        });
+    }
+
+    private static boolean isLocal( Uri uri )
+    {
+        String scheme = uri.getScheme();
+
+        return ContentResolver.SCHEME_CONTENT.equals(scheme) || ContentResolver.SCHEME_FILE.equals(scheme)
+                || ContentResolver.SCHEME_ANDROID_RESOURCE.equals(scheme);
+    }
+
+    /*******************
+     * DECODING
+     *******************/
+
+    /**
+     * Opens the image of the given Slot on a decoding thread and, if it is large, decodes its base
+     * layer.
+     */
+    private void open( final Slot slot )
+    {
+        BitmapRegionDecoder decoder = null;
+        Bitmap baseLayer = null;
+        int baseSampleSize = 1;
+        boolean large = false;
+        boolean failed = false;
+
+        try
+        {
+            BitmapFactory.Options options = decodeBounds(slot.uri);
+
+            if( options.outWidth <= 0 || options.outHeight <= 0 )
+            {
+                failed = true;
+            }
+            else if( isLarge(options) )
+            {
+                large = true;
+            }
+
+            if( large && !slot.cancelled )
+            {
+                InputStream stream = openStream(slot.uri);
+                try
+                {
+                    decoder = BitmapRegionDecoder.newInstance(stream, false);
+                }
+                finally
+                {
+                    stream.close();
+                }
+
+                baseSampleSize = getBaseSampleSize(options.outWidth, options.outHeight, slot.width, slot.height);
+
+                BitmapFactory.Options baseOptions = new BitmapFactory.Options();
+                baseOptions.inSampleSize = baseSampleSize;
+
+                baseLayer = decoder.decodeRegion(new Rect(0, 0, options.outWidth, options.outHeight), baseOptions);
+
+                if( baseLayer == null )
+                {
+                    decoder.recycle();
+                    decoder = null;
+                    failed = true;
+                }
+            }
+        }
+        catch( IOException e )
+        {
+            failed = true;
+        }
+        catch( OutOfMemoryError e )
+        {
+            failed = true;
+        }
+
+        final boolean openedLarge = large;
+        final BitmapRegionDecoder openedDecoder = decoder;
+        final Bitmap openedBaseLayer = baseLayer;
+        final int openedSampleSize = baseSampleSize;
+        final boolean openFailed = failed;
+
+        uiHandler.post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                onOpened(slot, openedLarge, openedDecoder, openedBaseLayer, openedSampleSize, openFailed);
+            }
+        });
+    }
+
+    /**
+     * Decodes only the bounds of the given image, on a decoding thread.
+     */
+    private BitmapFactory.Options decodeBounds( Uri uri ) throws IOException
+    {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+
+        InputStream stream = openStream(uri);
+        try
+        {
+            BitmapFactory.decodeStream(stream, null, options);
+        }
+        finally
+        {
+            stream.close();
+        }
+
+        return options;
+    }
+
+    private boolean isLarge( BitmapFactory.Options bounds )
+    {
+        return (long) bounds.outWidth * bounds.outHeight >= minPixels;
+    }
+
+    private InputStream openStream( Uri uri ) throws IOException
+    {
+        InputStream stream = contentResolver.openInputStream(uri);
+
+        if( stream == null )
+        {
+            throw new IOException("Could not open " + uri);
+        }
+
+        return stream;
+    }
+
+    /**
+     * Returns the power of two sample size of the base layer, which decodes the image to at most
+     * half the given size (or half the screen size, if the size is 0).
+     */
+    private int getBaseSampleSize( int imageWidth, int imageHeight, int width, int height )
+    {
+        if( width <= 0 || height <= 0 )
+        {
+            width = displayMetrics.widthPixels;
+            height = displayMetrics.heightPixels;
+        }
+
+        int sampleSize = 1;
+
+        while( imageWidth / sampleSize > width / 2 || imageHeight / sampleSize > height / 2 )
+        {
+            sampleSize *= 2;
+        }
+
+        return sampleSize;
+    }
+
+    /**
+     * The load of a single ImageView.
+     */
+    private static final class Slot
+    {
+        private final ImageView view;
+        private final Uri       uri;
+        private final Uri       thumbnailUri;
+        private final int       width;
+        private final int       height;
+        private final int       priority;
+        private final Callback  callback;
+
+        // Whether the image is loaded by the other ImageLoader.
+        private boolean            delegated = false;
+        // The Drawable of a large image, once opened.
+        private TiledImageDrawable drawable;
+        // Read on the decoding threads.
+        private volatile boolean   cancelled = false;
+
+        public Slot( ImageView view, Uri uri, Uri thumbnailUri, int width, int height, int priority, Callback callback )
+        {
+            this.view = view;
+            this.uri = uri;
+            this.thumbnailUri = thumbnailUri;
+            this.width = width;
+            this.height = height;
+            this.priority = priority;
+            this.callback = callback;
+        }
+    }
+
+    /**
+     * A task of the executor, ordered by priority, and then by the order they were queued in.
+     */
+    private abstract static class PriorityTask implements Runnable, Comparable<PriorityTask>
+    {
+        private final int  priority;
+        private final long sequence;
+
+        public PriorityTask( int priority, long sequence )
+        {
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo( PriorityTask other )
+        {
+            if( priority != other.priority )
+            {
+                return priority > other.priority ? -1 : 1;
+            }
+
+            return sequence < other.sequence ? -1 : ( sequence == other.sequence ? 0 : 1 );
+        }
+    }
+
+    private final class OpenTask extends PriorityTask
+    {
+        private final Slot slot;
+
+        public OpenTask( Slot slot, long sequence )
+        {
+            super(slot.priority, sequence);
+            this.slot = slot;
+        }
+
+        @Override
+        public void run()
+        {
+            if( slot.cancelled )
+            {
+                return;
+            }
+
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            open(slot);
+        }
+    }
+
+    /**
+     * Decodes a tile of the Showing image, so at the highest priority.
+     */
+    private final class TileTask extends PriorityTask
+    {
+        private final TiledImageDrawable drawable;
+        private final long               key;
+        private final int                level;
+        private final int                column;
+        private final int                row;
+
+        public TileTask( TiledImageDrawable drawable, long key, int level, int column, int row, long sequence )
+        {
+            super(PRIORITY_HIGH, sequence);
+            this.drawable = drawable;
+            this.key = key;
+            this.level = level;
+            this.column = column;
+            this.row = row;
+        }
+
+        @Override
+        public void run()
+        {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+            // Tiles no longer needed are skipped, and queued again if they are drawn again.
+            final Bitmap tile = drawable.isRefining() ? drawable.decodeTile(level, column, row) : null;
+
+            uiHandler.post(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    onTileDecoded(drawable, key, tile);
+                }
+            });
+        }
+    }
+
+    /**
+     * A prefetch of a local image whose bounds are not known yet. The bounds are decoded first,
+     * and only an image that is not large is then prefetched by the other loader.
+     */
+    private final class BoundsRequest extends PriorityTask implements Request
+    {
+        private final Uri      uri;
+        private final int      width;
+        private final int      height;
+        private final int      priority;
+        private final boolean  toMemory;
+        private final Callback callback;
+
+        // Only used on the UI thread, except cancelled.
+        private volatile boolean cancelled = false;
+        private boolean          finished  = false;
+        private boolean          failed    = false;
+        // The prefetch of the other loader, once the image is known not to be large.
+        private Request          request;
+
+        public BoundsRequest( Uri uri, int width, int height, int priority, boolean toMemory, Callback callback, long sequence )
+        {
+            super(priority, sequence);
+
+            this.uri = uri;
+            this.width = width;
+            this.height = height;
+            this.priority = priority;
+            this.toMemory = toMemory;
+            this.callback = callback;
+        }
+
+        @Override
+        public void run()
+        {
+            if( cancelled )
+            {
+                return;
+            }
+
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+            boolean decodeFailed;
+            boolean decodedLarge = false;
+
+            try
+            {
+                BitmapFactory.Options options = decodeBounds(uri);
+
+                decodeFailed = options.outWidth <= 0 || options.outHeight <= 0;
+                decodedLarge = !decodeFailed && isLarge(options);
+            }
+            catch( IOException e )
+            {
+                decodeFailed = true;
+            }
+
+            final boolean boundsFailed = decodeFailed;
+            final boolean large = decodedLarge;
+
+            uiHandler.post(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    onBoundsDecoded(large, boundsFailed);
+                }
+            });
+        }
+
+        private void onBoundsDecoded( boolean large, boolean boundsFailed )
+        {
+            if( !boundsFailed )
+            {
+                if( large )
+                {
+                    getImageId(uri);
+                }
+                else
+                {
+                    imageIds.put(uri.toString(), NOT_LARGE);
+                }
+            }
+
+            if( cancelled )
+            {
+                return;
+            }
+
+            if( !boundsFailed && !large )
+            {
+                request = imageLoader.prefetch(uri, width, height, priority, toMemory, callback);
+                return;
+            }
+
+            // The base layer of a large image is decoded when it is loaded, nothing to prefetch.
+            finished = true;
+            failed = boundsFailed;
+
+            if( callback != null )
+            {
+                if( failed )
+                {
+                    callback.onFailed();
+                }
+                else
+                {
+                    callback.onCompleted();
+                }
+            }
+        }
+
+        @Override
+        public void cancel()
+        {
+            if( request != null )
+            {
+                request.cancel();
+            }
+            else
+            {
+                cancelled = !finished;
+            }
+        }
+
+        @Override
+        public boolean isFinished()
+        {
+            return request != null ? request.isFinished() : finished;
+        }
+
+        @Override
+        public boolean hasFailed()
+        {
+            return request != null ? request.hasFailed() : failed;
+        }
+
+        @Override
+        public boolean isSkipped()
+        {
+            // Only the bounds of a large image were decoded.
+            return request != null ? request.isSkipped() : finished && !failed;
+        }
+    }
+
+    /**
+     * A prefetch that has nothing to do, finished on the next message of the UI thread.
+     */
+    private static final class FinishedRequest implements Request, Runnable
+    {
+        private final Callback callback;
+        private boolean        cancelled = false;
+        private boolean        finished  = false;
+
+        public FinishedRequest( Callback callback )
+        {
+            this.callback = callback;
+        }
+
+        @Override
+        public void run()
+        {
+            if( cancelled )
+            {
+                return;
+            }
+
+            finished = true;
+
+            if( callback != null )
+            {
+                callback.onCompleted();
+            }
+        }
+
+        @Override
+        public void cancel()
+        {
+            cancelled = !finished;
+        }
+
+        @Override
+        public boolean isFinished()
+        {
+            return finished;
+        }
+
+        @Override
+        public boolean hasFailed()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean isSkipped()
+        {
+            return true;
+        }
+    }
+}
@@ -3,43 +3,77 @@ package pt.nmusic.imageswitcher;
 import android.view.View;
 
 /**
+ * Keeps track of which View is the Previous, Showing and Next View.
+ * <p/>
+ * The Views are held in a ring buffer, so any (odd) number of slots can be used. With three
+ * slots only the direct neighbours are attached, while five or seven slots keep the +/-2 or +/-3
+ * images attached ahead of the user. Rotating the ring is O(1) regardless of the slot count.
+ * <p/>
  * Created by bam on 14/11/15.
  */
 public class ViewTracker
 {
-    private View previousImage;
-    private View showingImage;
-    private View nextImage;
+    // The Views in the ring, in their original order.
+    private final View[] slots;
+    // The number of slots on each side of the Showing slot.
+    private final int    radius;
+    // The position in the "slots" array of the Showing View.
+    private int          showingPosition;
+
     private View videoSurfaceContainer;
 
-    public ViewTracker( View imageA, View imageB, View imageC)
+    public ViewTracker( View imageA, View imageB, View imageC )
     {
-        previousImage = imageA;
-        showingImage = imageB;
-        nextImage = imageC;
+        this(new View[]{ imageA, imageB, imageC }, null);
     }
 
     public ViewTracker( View imageA, View imageB, View imageC, View videoSurfaceContainer )
     {
-        previousImage = imageA;
-        showingImage = imageB;
-        nextImage = imageC;
+        this(new View[]{ imageA, imageB, imageC }, videoSurfaceContainer);
+    }
+
+    /**
+     * Constructor for a ViewTracker with any odd number (three or more) of Views. The View in the
+     * middle of the given array is the Showing View, the ones before it are the Previous Views
+     * (closest last) and the ones after it are the Next Views (closest first).
+     *
+     * @param images                The Views that will be rotated through.
+     * @param videoSurfaceContainer An optional View that follows the Showing View. Can be null.
+     */
+    public ViewTracker( View[] images, View videoSurfaceContainer )
+    {
+        if( images == null || images.length < 3 || images.length % 2 == 0 )
+        {
+            throw new IllegalArgumentException("Given Views must be an odd number of at least three! Error!");
+        }
+
+        for( View image : images )
+        {
+            if( image == null )
+            {
+                throw new IllegalArgumentException("Given Views contained null! Error!");
+            }
+        }
+
+        this.slots = images.clone();
+        this.radius = images.length / 2;
+        this.showingPosition = radius;
         this.videoSurfaceContainer = videoSurfaceContainer;
     }
 
     public View getPreviousImage()
     {
-        return previousImage;
+        return getImage(-1);
     }
 
     public View getShowingImage()
     {
-        return showingImage;
+        return getImage(0);
     }
 
     public View getNextImage()
     {
-        return nextImage;
+        return getImage(1);
     }
 
     public View getVideoSurfaceContainer()
@@ -48,39 +82,106 @@ public class ViewTracker
     }
 
     /**
-     * This function needs to replace the Previous with Showing, the Showing with Next and
-     * the Next with Previous. So one shift to the next and using the former Previous as Next.
+     * Returns the View at the given offset from the Showing View, where negative offsets are
+     * Previous Views and positive offsets are Next Views.
+     *
+     * @param offset An offset between -{@link #getRadius()} and {@link #getRadius()}.
      */
-    public void switchNext()
+    public View getImage( int offset )
+    {
+        if( offset < -radius || offset > radius )
+        {
+            throw new IllegalArgumentException("Given offset " + offset + " is outside the tracked slots! Error!");
+        }
+
+        return slots[toPosition(offset)];
+    }
+
+    /**
+     * Returns the View at the given position in the original order the Views were given in.
+     * Together with {@link #getSlotCount()} this can be used to iterate over every View.
+     */
+    public View getSlot( int position )
     {
-        View tempHolder = getPreviousImage();
+        return slots[position];
+    }
 
-        previousImage = getShowingImage();
-        previousImage.setVisibility(View.GONE);
+    /**
+     * Returns the offset (from the Showing View) of the given View, or {@link Integer#MIN_VALUE}
+     * if the View is not tracked.
+     */
+    public int getOffset( View image )
+    {
+        for( int i = 0; i < slots.length; i++ )
+        {
+            if( slots[i] == image )
+            {
+                return toOffset(i);
+            }
+        }
+
+        return Integer.MIN_VALUE;
+    }
 
-        showingImage = getNextImage();
-        showingImage.setVisibility(View.VISIBLE);
+    /**
+     * Returns the total number of tracked slots (not counting the video surface).
+     */
+    public int getSlotCount()
+    {
+        return slots.length;
+    }
 
-        nextImage = tempHolder;
-        nextImage.setVisibility(View.GONE);
+    /**
+     * Returns the number of slots on each side of the Showing View.
+     */
+    public int getRadius()
+    {
+        return radius;
     }
 
+    /**
+     * Rotates the ring one step towards the next View. The former Showing View becomes the first
+     * Previous View and the furthest Previous View is recycled as the furthest Next View.
+     */
+    public void switchNext()
+    {
+        View formerShowing = getShowingImage();
+
+        showingPosition = toPosition(1);
+
+        formerShowing.setVisibility(View.GONE);
+        getShowingImage().setVisibility(View.VISIBLE);
+
+        // The recycled View (now the furthest Next View).
+        getImage(radius).setVisibility(View.GONE);
+    }
 
     /**
-     * This function needs to replace the Next with Showing, the Showing with Previous and
-     * the Previous with Next. So one shift to the previous and using the former Next as Previous.
+     * Rotates the ring one step towards the previous View. The former Showing View becomes the
+     * first Next View and the furthest Next View is recycled as the furthest Previous View.
      */
     public void switchPrevious()
     {
-        View tempHolder = getNextImage();
+        View formerShowing = getShowingImage();
+
+        showingPosition = toPosition(-1);
+
+        formerShowing.setVisibility(View.GONE);
+        getShowingImage().setVisibility(View.VISIBLE);
 
-        nextImage = getShowingImage();
-        nextImage.setVisibility(View.GONE);
+        // The recycled View (now the furthest Previous View).
+        getImage(-radius).setVisibility(View.GONE);
+    }
 
-        showingImage = getPreviousImage();
-        showingImage.setVisibility(View.VISIBLE);
+    private int toPosition( int offset )
+    {
+        return ( showingPosition + offset + slots.length ) % slots.length;
+    }
+
+    private int toOffset( int position )
+    {
+        int offset = ( position - showingPosition + slots.length ) % slots.length;
 
-        previousImage = tempHolder;
-        previousImage.setVisibility(View.GONE);
+        return offset > radius ? offset - slots.length : offset;
     }
 }
@@ -0,0 +1,208 @@
+package pt.nmusic.imageswitcher;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the prefetch depth the PrefetchPolicy derives from the dwell time and load latency, its
+ * caps, and its hit rate counters.
+ */
+public class PrefetchPolicyTest
+{
+    private static final float DELTA = 0.0001f;
+
+    private PrefetchPolicy policy;
+
+    @Before
+    public void setUp()
+    {
+        policy = new PrefetchPolicy();
+
+        // Only the last sample counts, unless a test sets otherwise.
+        policy.setSmoothing(0);
+        policy.setDepth(1, 100, 4);
+        policy.setBandwidthCap(100);
+    }
+
+    /**
+     * Records switches the given number of milliseconds apart, and a load of the given latency.
+     */
+    private void measure( long dwellMs, long latencyMs )
+    {
+        policy.onSwitch(1000);
+        policy.onSwitch(1000 + dwellMs);
+        policy.onLoadFinished(latencyMs);
+    }
+
+    /*******************
+     * DEPTH
+     *******************/
+
+    @Test
+    public void initialDepthIsUsedBeforeAnySample()
+    {
+        assertEquals(4, policy.getPrefetchDepth());
+
+        // A single switch gives no dwell time.
+        policy.onSwitch(1000);
+        policy.onLoadFinished(500);
+        assertEquals(4, policy.getPrefetchDepth());
+        assertEquals(-1, policy.getDwellTime(), DELTA);
+    }
+
+    @Test
+    public void depthIsLatencyOverDwellRoundedUpPlusOne()
+    {
+        measure(100, 300);
+        assertEquals(4, policy.getPrefetchDepth());
+
+        measure(100, 301);
+        assertEquals(5, policy.getPrefetchDepth());
+
+        // Slow browsing only prefetches the next item or two.
+        measure(2000, 300);
+        assertEquals(2, policy.getPrefetchDepth());
+
+        // Images from the cache.
+        measure(2000, 0);
+        assertEquals(1, policy.getPrefetchDepth());
+    }
+
+    @Test
+    public void depthIsBoundedByMinAndMaxDepth()
+    {
+        policy.setDepth(2, 6, 4);
+
+        measure(2000, 0);
+        assertEquals(2, policy.getPrefetchDepth());
+
+        measure(10, 1000);
+        assertEquals(6, policy.getPrefetchDepth());
+    }
+
+    /*******************
+     * CAPS
+     *******************/
+
+    @Test
+    public void bandwidthCapAllowsOneMoreThanInFlight()
+    {
+        policy.setBandwidthCap(3);
+
+        measure(10, 1000);
+        assertEquals(4, policy.getPrefetchDepth());
+
+        // Also before any sample.
+        policy.reset();
+        policy.setBandwidthCap(2);
+        assertEquals(3, policy.getPrefetchDepth());
+    }
+
+    @Test
+    public void memoryCapLimitsTheBytesOfThePrefetchedItems()
+    {
+        measure(10, 1000);
+
+        policy.setItemBytes(4 * 1024 * 1024);
+        policy.setMemoryCap(14 * 1024 * 1024);
+        assertEquals(3, policy.getPrefetchDepth());
+
+        // The minimum depth still wins over the memory cap.
+        policy.setMemoryCap(1024);
+        assertEquals(1, policy.getPrefetchDepth());
+
+        // No cap, or no item size yet.
+        policy.setMemoryCap(0);
+        assertEquals(100, policy.getPrefetchDepth());
+
+        policy.setMemoryCap(14 * 1024 * 1024);
+        policy.setItemBytes(0);
+        assertEquals(100, policy.getPrefetchDepth());
+    }
+
+    /*******************
+     * MEASURING
+     *******************/
+
+    @Test
+    public void dwellTimeIsClampedToMaxDwellTime()
+    {
+        policy.setMaxDwellTime(5000);
+
+        policy.onSwitch(1000);
+        policy.onSwitch(61000);
+        assertEquals(5000, policy.getDwellTime(), DELTA);
+
+        // And to at least a millisecond.
+        policy.onSwitch(61000);
+        assertEquals(1, policy.getDwellTime(), DELTA);
+    }
+
+    @Test
+    public void samplesAreSmoothed()
+    {
+        policy.setSmoothing(0.75f);
+
+        // The first sample is taken as is.
+        policy.onLoadFinished(400);
+        assertEquals(400, policy.getLoadLatency(), DELTA);
+
+        policy.onLoadFinished(800);
+        assertEquals(500, policy.getLoadLatency(), DELTA);
+
+        policy.onSwitch(1000);
+        policy.onSwitch(1200);
+        policy.onSwitch(1600);
+        assertEquals(250, policy.getDwellTime(), DELTA);
+
+        // ceil(500 / 250) + 1
+        assertEquals(3, policy.getPrefetchDepth());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void smoothingOfOneIsRejected()
+    {
+        policy.setSmoothing(1);
+    }
+
+    @Test
+    public void resetForgetsTheMeasurements()
+    {
+        measure(10, 1000);
+        policy.onItemShown(true);
+
+        policy.reset();
+
+        assertEquals(4, policy.getPrefetchDepth());
+        assertEquals(-1, policy.getDwellTime(), DELTA);
+        assertEquals(-1, policy.getLoadLatency(), DELTA);
+        assertEquals(0, policy.getHitCount());
+    }
+
+    /*******************
+     * HIT RATE
+     *******************/
+
+    @Test
+    public void hitRateCountsTheItemsThatWereReady()
+    {
+        assertEquals(0, policy.getHitRate(), DELTA);
+
+        policy.onItemShown(true);
+        policy.onItemShown(true);
+        policy.onItemShown(true);
+        policy.onItemShown(false);
+
+        assertEquals(3, policy.getHitCount());
+        assertEquals(1, policy.getMissCount());
+        assertEquals(0.75f, policy.getHitRate(), DELTA);
+
+        policy.resetCounters();
+
+        assertEquals(0, policy.getHitCount());
+        assertEquals(0, policy.getMissCount());
+        assertEquals(0, policy.getHitRate(), DELTA);
+    }
+}
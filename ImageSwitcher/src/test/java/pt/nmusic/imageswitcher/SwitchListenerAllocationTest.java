@@ -0,0 +1,355 @@
+package pt.nmusic.imageswitcher;
+
+import android.animation.ValueAnimator;
+import android.content.Context;
+import android.view.View;
+import android.view.animation.LinearInterpolator;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counts the bytes allocated by steady-state switching, seeking and swiping, with and without
+ * re-used animators.
+ * <p/>
+ * The main Looper is paused, and every cycle ends its animation before the next one starts. The
+ * bytes allocated by starting and ending an animation (in the animation framework, and by
+ * Robolectric running it) are measured directly, with a bare ValueAnimator, and subtracted. The
+ * Views keep their position and visibility in fields, so the framework View code is not measured
+ * either: it does not allocate on a device, but does under Robolectric, which boxes the arguments
+ * of every native call. What is left is allocated by the SwitchListener.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class SwitchListenerAllocationTest
+{
+    private static final int WARM_UP_CYCLES  = 200;
+    private static final int MEASURED_CYCLES = 1000;
+    private static final int DRAG_FRAMES     = 10;
+    private static final int ANIMATION_MS    = 250;
+
+    // A switch with new animators allocates the Animators, their keyframes and listeners.
+    private static final int NEW_ANIMATOR_BYTES = 1024;
+
+    // The kinds of cycle measured, the bare one only starts and ends an animation.
+    private static final int CYCLE_SEEK         = 0;
+    private static final int CYCLE_SWIPE        = 1;
+    private static final int CYCLE_SWIPE_CANCEL = 2;
+    private static final int CYCLE_BARE         = 3;
+
+    private CountingSwitcher switcher;
+    private SwitchListener   switchListener;
+    private ValueAnimator    bareAnimator;
+    private int              widthPixels;
+
+    @Before
+    public void setUp()
+    {
+        Context context = RuntimeEnvironment.application;
+        widthPixels = context.getResources().getDisplayMetrics().widthPixels;
+
+        ViewTracker viewTracker = new ViewTracker(new PlainView(context), new PlainView(context), new PlainView(context));
+
+        switcher = new CountingSwitcher();
+        switchListener = new SwitchListener(context, viewTracker, switcher);
+        switchListener.setAnimationDuration(ANIMATION_MS);
+
+        // The same animator as the re-used switch animation, with an update listener that only
+        // reads the fraction.
+        bareAnimator = ValueAnimator.ofFloat(0, 1);
+        bareAnimator.setInterpolator(new LinearInterpolator());
+        bareAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener()
+        {
+            @Override
+            public void onAnimationUpdate( ValueAnimator animation )
+            {
+                animation.getAnimatedFraction();
+            }
+        });
+    }
+
+    @Test
+    public void reusedSeekAllocatesNothing()
+    {
+        switchListener.setReuseAnimators(true);
+
+        assertAllocatesNothing(CYCLE_SEEK);
+        assertEquals(2 * ( WARM_UP_CYCLES + MEASURED_CYCLES ), switcher.index);
+    }
+
+    @Test
+    public void reusedSwipeAllocatesNothing()
+    {
+        switchListener.setReuseAnimators(true);
+
+        assertAllocatesNothing(CYCLE_SWIPE);
+        assertEquals(WARM_UP_CYCLES + MEASURED_CYCLES, switcher.index);
+    }
+
+    @Test
+    public void reusedCancelledSwipeAllocatesNothing()
+    {
+        switchListener.setReuseAnimators(true);
+
+        assertAllocatesNothing(CYCLE_SWIPE_CANCEL);
+        assertEquals(0, switcher.index);
+    }
+
+    @Test
+    public void newAnimatorsAllocate()
+    {
+        switchListener.setReuseAnimators(false);
+
+        long bytesPerSwitch = measure(CYCLE_SWIPE) - measure(CYCLE_BARE);
+
+        assertTrue("Allocated " + bytesPerSwitch + " bytes per switch", bytesPerSwitch > NEW_ANIMATOR_BYTES);
+        assertEquals(WARM_UP_CYCLES + MEASURED_CYCLES, switcher.index);
+    }
+
+    @Test
+    public void queuedSwitchesArePerformedAfterTheRunningOne()
+    {
+        switchListener.setReuseAnimators(true);
+
+        ShadowLooper.pauseMainLooper();
+
+        switchListener.moveBackgroundLeft(true);
+        switchListener.moveBackgroundLeft(true);
+        switchListener.moveBackgroundLeft(true);
+
+        ShadowLooper.unPauseMainLooper();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        assertEquals(3, switcher.index);
+    }
+
+    private void assertAllocatesNothing( int cycle )
+    {
+        long harness = measure(CYCLE_BARE);
+        long bytesPerCycle = measure(cycle) - harness;
+
+        assertEquals("Allocated " + bytesPerCycle + " bytes per cycle, besides the " + harness
+                + " of the animation framework", 0, bytesPerCycle);
+    }
+
+    /**
+     * Returns the bytes allocated per cycle of the given kind, once warmed up.
+     */
+    private long measure( int cycle )
+    {
+        ShadowLooper.pauseMainLooper();
+
+        for( int i = 0; i < WARM_UP_CYCLES; i++ )
+        {
+            run(cycle);
+        }
+
+        // The bytes allocated by measuring itself.
+        long overhead = getAllocatedBytes();
+        overhead = getAllocatedBytes() - overhead;
+
+        long start = getAllocatedBytes();
+
+        for( int i = 0; i < MEASURED_CYCLES; i++ )
+        {
+            run(cycle);
+        }
+
+        return ( getAllocatedBytes() - start - overhead ) / MEASURED_CYCLES;
+    }
+
+    /**
+     * Runs a single cycle of the given kind, and ends its animation.
+     */
+    private void run( int cycle )
+    {
+        int index = switcher.index;
+
+        switch( cycle )
+        {
+            case CYCLE_SEEK:
+                switchListener.seekTo(index + 2, true);
+                index += 2;
+                break;
+
+            case CYCLE_SWIPE:
+                // As the GestureListener does for a drag past the threshold and a release.
+                drag();
+                switchListener.moveBackgroundLeft(true);
+                switchListener.resetSwipeEvent(true);
+                index++;
+                break;
+
+            case CYCLE_SWIPE_CANCEL:
+                // A drag short of the threshold, returned to the center.
+                drag();
+                switchListener.resetSwipeEvent(false);
+                break;
+
+            default:
+                bareAnimator.setDuration(ANIMATION_MS);
+                bareAnimator.start();
+                bareAnimator.end();
+                return;
+        }
+
+        // Ends the running animation (a single update with a fraction of 1) and, as that already
+        // shows the item, does nothing else. Running the frames instead would make the measuring
+        // depend on how the scheduler of Robolectric lines them up.
+        switchListener.seekTo(index, false);
+    }
+
+    private void drag()
+    {
+        switchListener.initSwipeEvent();
+
+        for( int i = 1; i <= DRAG_FRAMES; i++ )
+        {
+            switchListener.moveBackgrounds(-i * widthPixels / ( 2f * DRAG_FRAMES ));
+        }
+    }
+
+    private static long getAllocatedBytes()
+    {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * A View that keeps its position and visibility in fields, instead of in its (native)
+     * RenderNode.
+     */
+    private static final class PlainView extends View
+    {
+        private float translationX = 0;
+        private int   visibility   = VISIBLE;
+
+        public PlainView( Context context )
+        {
+            super(context);
+        }
+
+        @Override
+        public float getX()
+        {
+            return translationX;
+        }
+
+        @Override
+        public void setX( float x )
+        {
+            translationX = x;
+        }
+
+        @Override
+        public float getTranslationX()
+        {
+            return translationX;
+        }
+
+        @Override
+        public void setTranslationX( float translationX )
+        {
+            this.translationX = translationX;
+        }
+
+        @Override
+        public int getVisibility()
+        {
+            return visibility;
+        }
+
+        @Override
+        public void setVisibility( int visibility )
+        {
+            this.visibility = visibility;
+        }
+    }
+
+    /**
+     * A SeekableSwitcher over endless items, that allocates nothing itself.
+     */
+    private static final class CountingSwitcher implements SeekableSwitcher
+    {
+        private int index = 0;
+
+        @Override
+        public int getCurrentIndex()
+        {
+            return index;
+        }
+
+        @Override
+        public boolean hasItem( int index )
+        {
+            return index >= 0;
+        }
+
+        @Override
+        public int getSeekDistance( int index )
+        {
+            if( !hasItem(index) )
+            {
+                throw new IllegalArgumentException("Given index " + index + " was out of bounds! Error!");
+            }
+
+            return index - this.index;
+        }
+
+        @Override
+        public boolean seekAction( int index, boolean userInitiated )
+        {
+            this.index = index;
+            return true;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean hasPrevious()
+        {
+            return index > 0;
+        }
+
+        @Override
+        public boolean nextAction( boolean userInitiated )
+        {
+            index++;
+            return true;
+        }
+
+        @Override
+        public boolean previousAction( boolean userInitiated )
+        {
+            index--;
+            return true;
+        }
+
+        @Override
+        public boolean prepareNextView( boolean userInitiated )
+        {
+            return true;
+        }
+
+        @Override
+        public boolean preparePreviousView( boolean userInitiated )
+        {
+            return true;
+        }
+    }
+}
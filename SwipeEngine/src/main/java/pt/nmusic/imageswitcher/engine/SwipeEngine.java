@@ -0,0 +1,299 @@
+package pt.nmusic.imageswitcher.engine;
+
+/**
+ * The swipe logic of the SwitchListener, free of any Android types. It takes raw touch samples
+ * (coordinates in pixels and times in milliseconds) and emits the position the Views should be
+ * moved to, and whether a swipe should result in a switch.
+ * <p/>
+ * The position is the X translation of the Showing View, so a negative position means the user
+ * is dragging towards the Next View. None of the functions allocate.
+ */
+public class SwipeEngine
+{
+    // The possible results of a swipe.
+    public static final int DECISION_NONE     = 0;
+    public static final int DECISION_NEXT     = 1;
+    public static final int DECISION_PREVIOUS = 2;
+
+    // The number of samples kept to estimate the velocity, and their maximum age.
+    private static final int  VELOCITY_SAMPLES   = 8;
+    private static final long VELOCITY_WINDOW_MS = 100;
+    // The prediction stops once the newest sample is this old, the finger has (nearly) stopped.
+    private static final long STALE_SAMPLE_MS    = 40;
+
+    // The width (in pixels) of the area swiped in, one View.
+    private int width;
+
+    // The distance (in pixels) that the scroll has to pass to count as a desire to switch.
+    private int   switchScrollThreshold;
+    // This variable determines at percentage of the width the switch should happen.
+    private float switchPercentage = 0.5f;
+
+    // The distance (in pixels) and velocity (in pixels per second) a fling has to pass.
+    private int flingDistanceThreshold;
+    private int flingVelocityThreshold;
+
+    // The total amount of touch distance scrolled, either direction.
+    private float distanceScrolled;
+
+    // A ring buffer of the most recent samples, used to estimate the velocity.
+    private final float[] sampleX    = new float[VELOCITY_SAMPLES];
+    private final long[]  sampleTime = new long[VELOCITY_SAMPLES];
+    private int           sampleCount;
+    private int           sampleHead;
+
+    /**
+     * @param width                  The width (in pixels) of the area swiped in.
+     * @param flingDistanceThreshold The distance (in pixels) a fling has to cover.
+     * @param flingVelocityThreshold The velocity (in pixels per second) a fling has to reach.
+     */
+    public SwipeEngine( int width, int flingDistanceThreshold, int flingVelocityThreshold )
+    {
+        if( width < 1 )
+        {
+            throw new IllegalArgumentException("Given width was less than one! Error!");
+        }
+
+        this.width = width;
+        this.flingDistanceThreshold = flingDistanceThreshold;
+        this.flingVelocityThreshold = flingVelocityThreshold;
+
+        // The Threshold that needs to be passed for the simple scroll to register a switch.
+        switchScrollThreshold = Math.round(width * switchPercentage);
+    }
+
+    /*******************
+     * CONFIGURATION
+     *******************/
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * Set the percentage of the width at which a scroll (not Fling) release should perform a
+     * switch to the next/previous.
+     */
+    public void setSwitchPercentage( float switchPercentage )
+    {
+        this.switchPercentage = switchPercentage;
+
+        // The Threshold that needs to be passed for the simple scroll to register a switch.
+        switchScrollThreshold = Math.round(width * switchPercentage);
+    }
+
+    public int getSwitchScrollThreshold()
+    {
+        return switchScrollThreshold;
+    }
+
+    public void setFlingDistanceThreshold( int flingDistanceThreshold )
+    {
+        this.flingDistanceThreshold = flingDistanceThreshold;
+    }
+
+    public void setFlingVelocityThreshold( int flingVelocityThreshold )
+    {
+        this.flingVelocityThreshold = flingVelocityThreshold;
+    }
+
+    /*******************
+     * SWIPE
+     *******************/
+
+    /**
+     * Starts a swipe at the given raw position.
+     */
+    public void down( float x, float y, long timeMs )
+    {
+        distanceScrolled = 0;
+
+        sampleCount = 0;
+        sampleHead = 0;
+        addSample(x, timeMs);
+    }
+
+    /**
+     * Starts a swipe with the Views already moved to the given position, for example when the
+     * user grabs a running animation.
+     */
+    public void startAt( float position )
+    {
+        distanceScrolled = -position;
+    }
+
+    /**
+     * Scrolls the swipe by the given distance (positive towards the Next View), as reported by
+     * the Android GestureDetector.
+     *
+     * @return True if the position changed, false if the scroll was ignored (scrolled too far).
+     */
+    public boolean scrollBy( float distanceX )
+    {
+        // If the potential new distanceScrolled is not wider than width and -width.
+        if( width > ( distanceScrolled + distanceX ) && ( distanceScrolled + distanceX ) > -width )
+        {
+            // Register Distance scrolled (add to any previous scroll).
+            distanceScrolled += distanceX;
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Adds a sample used only to estimate the velocity, for every raw move sample including the
+     * historical ones that were batched into a single move.
+     */
+    public void addSample( float x, long timeMs )
+    {
+        sampleX[sampleHead] = x;
+        sampleTime[sampleHead] = timeMs;
+
+        sampleHead = ( sampleHead + 1 ) % VELOCITY_SAMPLES;
+        if( sampleCount < VELOCITY_SAMPLES )
+        {
+            sampleCount++;
+        }
+    }
+
+    /**
+     * Decides whether a release (without a fling) results in a switch, based on the distance
+     * scrolled.
+     */
+    public int release( boolean hasNext, boolean hasPrevious )
+    {
+        // Determine if the distanceScrolled is passed the "switchScrollThreshold"
+        if( distanceScrolled > switchScrollThreshold && hasNext ) // Moved to the left.
+        {
+            return DECISION_NEXT;
+        }
+        else if( distanceScrolled < -switchScrollThreshold && hasPrevious ) // Moved to the right.
+        {
+            return DECISION_PREVIOUS;
+        }
+
+        return DECISION_NONE;
+    }
+
+    /**
+     * Decides whether a fling results in a switch.
+     *
+     * @param distanceX The X distance from the start to the end of the fling.
+     * @param distanceY The Y distance from the start to the end of the fling.
+     * @param velocityX The X velocity of the fling, in pixels per second.
+     */
+    public int fling( float distanceX, float distanceY, float velocityX, boolean hasNext, boolean hasPrevious )
+    {
+        if( Math.abs(distanceX) > Math.abs(distanceY)
+                && Math.abs(distanceX) > flingDistanceThreshold
+                && Math.abs(velocityX) > flingVelocityThreshold )
+        {
+            if( velocityX < 0 && hasNext )
+            {
+                return DECISION_NEXT;
+            }
+            else if( velocityX > 0 && hasPrevious )
+            {
+                return DECISION_PREVIOUS;
+            }
+        }
+
+        return DECISION_NONE;
+    }
+
+    /**
+     * Resets the swipe.
+     */
+    public void reset()
+    {
+        distanceScrolled = 0;
+        sampleCount = 0;
+        sampleHead = 0;
+    }
+
+    /**
+     * Returns the position (X translation of the Showing View) of the swipe.
+     */
+    public float getPosition()
+    {
+        return -distanceScrolled;
+    }
+
+    /**
+     * Returns the total distance scrolled, positive towards the Next View.
+     */
+    public float getDistanceScrolled()
+    {
+        return distanceScrolled;
+    }
+
+    /**
+     * Returns the X velocity (in pixels per second) estimated from the samples of the last
+     * {@value #VELOCITY_WINDOW_MS} milliseconds, or 0 if there are too few of them.
+     */
+    public float getVelocityX()
+    {
+        if( sampleCount < 2 )
+        {
+            return 0;
+        }
+
+        int newest = ( sampleHead - 1 + VELOCITY_SAMPLES ) % VELOCITY_SAMPLES;
+        int oldest = newest;
+
+        // Walk back to the oldest sample within the window.
+        for( int i = 1; i < sampleCount; i++ )
+        {
+            int candidate = ( newest - i + VELOCITY_SAMPLES ) % VELOCITY_SAMPLES;
+
+            if( sampleTime[newest] - sampleTime[candidate] > VELOCITY_WINDOW_MS )
+            {
+                break;
+            }
+
+            oldest = candidate;
+        }
+
+        long duration = sampleTime[newest] - sampleTime[oldest];
+
+        if( duration <= 0 )
+        {
+            return 0;
+        }
+
+        return ( sampleX[newest] - sampleX[oldest] ) * 1000f / duration;
+    }
+
+    /**
+     * Returns the position extrapolated the given time ahead with the estimated velocity, to hide
+     * the time between a touch sample and the frame that shows it. Once the newest sample is
+     * {@value #STALE_SAMPLE_MS} milliseconds old (at the given time) the position itself is
+     * returned, so a drag that has stopped settles on the finger.
+     *
+     * @param timeMs  The current time, in the time base of the samples.
+     * @param aheadMs The time to extrapolate ahead.
+     */
+    public float getPredictedPosition( long timeMs, long aheadMs )
+    {
+        float position = getPosition();
+
+        if( sampleCount == 0 || aheadMs <= 0 )
+        {
+            return position;
+        }
+
+        int newest = ( sampleHead - 1 + VELOCITY_SAMPLES ) % VELOCITY_SAMPLES;
+
+        if( timeMs - sampleTime[newest] >= STALE_SAMPLE_MS )
+        {
+            return position;
+        }
+
+        float predicted = position + ( getVelocityX() * aheadMs / 1000f );
+
+        // Never predict past the width in either direction.
+        return Math.max(-width + 1, Math.min(width - 1, predicted));
+    }
+}
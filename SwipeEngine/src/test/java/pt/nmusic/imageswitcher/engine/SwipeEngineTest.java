@@ -0,0 +1,218 @@
+package pt.nmusic.imageswitcher.engine;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the switch threshold, the clamping of the scroll, the fling classification and the
+ * velocity estimate of the SwipeEngine, driven the way the SwitchListener drives it.
+ */
+public class SwipeEngineTest
+{
+    private static final float DELTA = 0.001f;
+
+    private static final int WIDTH          = 1000;
+    private static final int FLING_DISTANCE = 100;
+    private static final int FLING_VELOCITY = 1000;
+
+    private SwipeEngine engine;
+
+    @Before
+    public void setUp()
+    {
+        engine = new SwipeEngine(WIDTH, FLING_DISTANCE, FLING_VELOCITY);
+    }
+
+    /**
+     * Starts a swipe at the right edge and drags left, 10 pixels every 10 milliseconds, so at
+     * 1000 pixels per second towards the Next View.
+     */
+    private void dragLeft( int moves )
+    {
+        engine.down(WIDTH, 0, 0);
+
+        for( int i = 1; i <= moves; i++ )
+        {
+            engine.addSample(WIDTH - ( i * 10 ), i * 10);
+            engine.scrollBy(10);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroWidthIsRejected()
+    {
+        new SwipeEngine(0, FLING_DISTANCE, FLING_VELOCITY);
+    }
+
+    /*******************
+     * THRESHOLD
+     *******************/
+
+    @Test
+    public void thresholdFollowsTheSwitchPercentage()
+    {
+        assertEquals(500, engine.getSwitchScrollThreshold());
+
+        engine.setSwitchPercentage(0.3f);
+        assertEquals(300, engine.getSwitchScrollThreshold());
+    }
+
+    @Test
+    public void releaseSwitchesOnlyPastTheThreshold()
+    {
+        engine.scrollBy(500);
+        assertEquals(SwipeEngine.DECISION_NONE, engine.release(true, true));
+
+        engine.scrollBy(1);
+        assertEquals(SwipeEngine.DECISION_NEXT, engine.release(true, true));
+
+        engine.reset();
+        engine.scrollBy(-501);
+        assertEquals(SwipeEngine.DECISION_PREVIOUS, engine.release(true, true));
+    }
+
+    @Test
+    public void releaseNeedsAnItemToSwitchTo()
+    {
+        engine.scrollBy(600);
+        assertEquals(SwipeEngine.DECISION_NONE, engine.release(false, true));
+
+        engine.reset();
+        engine.scrollBy(-600);
+        assertEquals(SwipeEngine.DECISION_NONE, engine.release(true, false));
+    }
+
+    /*******************
+     * CLAMPING
+     *******************/
+
+    @Test
+    public void scrollIsClampedWithinTheWidth()
+    {
+        assertTrue(engine.scrollBy(999));
+        assertEquals(-999, engine.getPosition(), DELTA);
+
+        // A scroll that would reach the width is ignored as a whole.
+        assertFalse(engine.scrollBy(1));
+        assertEquals(-999, engine.getPosition(), DELTA);
+
+        assertTrue(engine.scrollBy(-1998));
+        assertFalse(engine.scrollBy(-1));
+        assertEquals(999, engine.getPosition(), DELTA);
+    }
+
+    @Test
+    public void startAtContinuesFromTheGrabbedPosition()
+    {
+        engine.down(500, 0, 0);
+        engine.startAt(-200);
+
+        assertEquals(-200, engine.getPosition(), DELTA);
+        assertEquals(200, engine.getDistanceScrolled(), DELTA);
+
+        // Past the threshold from where it was grabbed.
+        engine.scrollBy(301);
+        assertEquals(SwipeEngine.DECISION_NEXT, engine.release(true, true));
+    }
+
+    /*******************
+     * FLING
+     *******************/
+
+    @Test
+    public void flingSwitchesInTheDirectionOfTheVelocity()
+    {
+        assertEquals(SwipeEngine.DECISION_NEXT, engine.fling(-200, 0, -2000, true, true));
+        assertEquals(SwipeEngine.DECISION_PREVIOUS, engine.fling(200, 0, 2000, true, true));
+    }
+
+    @Test
+    public void flingNeedsDistanceVelocityAndAHorizontalMove()
+    {
+        // Too short.
+        assertEquals(SwipeEngine.DECISION_NONE, engine.fling(-100, 0, -2000, true, true));
+        // Too slow.
+        assertEquals(SwipeEngine.DECISION_NONE, engine.fling(-200, 0, -1000, true, true));
+        // Mostly vertical.
+        assertEquals(SwipeEngine.DECISION_NONE, engine.fling(-200, 300, -2000, true, true));
+    }
+
+    @Test
+    public void flingNeedsAnItemToSwitchTo()
+    {
+        assertEquals(SwipeEngine.DECISION_NONE, engine.fling(-200, 0, -2000, false, true));
+        assertEquals(SwipeEngine.DECISION_NONE, engine.fling(200, 0, 2000, true, false));
+    }
+
+    /*******************
+     * VELOCITY
+     *******************/
+
+    @Test
+    public void velocityIsEstimatedFromTheSamples()
+    {
+        dragLeft(20);
+
+        assertEquals(-1000, engine.getVelocityX(), DELTA);
+    }
+
+    @Test
+    public void velocityOnlyUsesTheRecentSamples()
+    {
+        engine.down(WIDTH, 0, 0);
+
+        // A pause, then a slow move.
+        engine.addSample(WIDTH - 10, 500);
+        engine.addSample(WIDTH - 15, 510);
+
+        assertEquals(-500, engine.getVelocityX(), DELTA);
+    }
+
+    @Test
+    public void velocityNeedsTwoSamplesApartInTime()
+    {
+        engine.down(WIDTH, 0, 0);
+        assertEquals(0, engine.getVelocityX(), DELTA);
+
+        engine.addSample(WIDTH - 10, 0);
+        assertEquals(0, engine.getVelocityX(), DELTA);
+
+        dragLeft(5);
+        engine.reset();
+        assertEquals(0, engine.getVelocityX(), DELTA);
+        assertEquals(0, engine.getPosition(), DELTA);
+    }
+
+    @Test
+    public void predictionExtrapolatesWithTheVelocity()
+    {
+        dragLeft(10);
+
+        assertEquals(-100, engine.getPosition(), DELTA);
+        assertEquals(-116, engine.getPredictedPosition(110, 16), DELTA);
+
+        // Nothing ahead.
+        assertEquals(-100, engine.getPredictedPosition(110, 0), DELTA);
+    }
+
+    @Test
+    public void predictionStopsOnceTheFingerHasStopped()
+    {
+        dragLeft(10);
+
+        assertEquals(-100, engine.getPredictedPosition(140, 16), DELTA);
+    }
+
+    @Test
+    public void predictionIsClampedWithinTheWidth()
+    {
+        dragLeft(10);
+        engine.scrollBy(890);
+
+        assertEquals(-999, engine.getPredictedPosition(110, 16), DELTA);
+    }
+}
@@ -0,0 +1,155 @@
+package pt.nmusic.imageswitcher.engine.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import pt.nmusic.imageswitcher.engine.SwipeEngine;
+
+/**
+ * Measures the cost of the SwipeEngine per touch event, the hot path of every drag.
+ * <p/>
+ * The engine is driven the way the SwitchListener drives it: every move event adds its samples to
+ * the velocity estimate and scrolls by the distance the GestureDetector reports, and a swipe ends
+ * in a fling decision or, without a fling, a release decision.
+ * <p/>
+ * Run with "./gradlew :SwipeEngineBenchmark:jmh". The gc profiler is enabled by the task, so the
+ * allocations per event ("gc.alloc.rate.norm") are reported as well and should stay at zero.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SwipeEngineBenchmark
+{
+    // A 1080 pixel wide screen with the thresholds of a xxhdpi device.
+    private static final int WIDTH             = 1080;
+    private static final int FLING_DISTANCE    = 150;
+    private static final int FLING_VELOCITY    = 1500;
+    // The number of move events in a full swipe, a bit more than half a second at 60Hz.
+    private static final int MOVES_PER_SWIPE   = 40;
+    // The samples in a move event, the historical ones batched into it and its own.
+    private static final int SAMPLES_PER_MOVE  = 2;
+    private static final int MOVE_DISTANCE     = 12;
+    private static final int FRAME_INTERVAL_MS = 16;
+    private static final int PREDICTION_MS     = 8;
+
+    private SwipeEngine engine;
+
+    private float x;
+    private long  time;
+    private int   moves;
+
+    @Setup
+    public void setUp()
+    {
+        engine = new SwipeEngine(WIDTH, FLING_DISTANCE, FLING_VELOCITY);
+        startSwipe();
+
+        // Fill the velocity samples.
+        for( int i = 0; i < MOVES_PER_SWIPE / 4; i++ )
+        {
+            move();
+        }
+    }
+
+    /**
+     * A single move event of a drag, restarting the drag once it has moved across the screen.
+     */
+    @Benchmark
+    public float move()
+    {
+        if( moves == MOVES_PER_SWIPE )
+        {
+            startSwipe();
+        }
+
+        moves++;
+
+        return drag();
+    }
+
+    /**
+     * The velocity estimate, done for every frame a drag is extrapolated and on every release.
+     */
+    @Benchmark
+    public float velocity()
+    {
+        return engine.getVelocityX();
+    }
+
+    /**
+     * The extrapolated position, done once per frame while dragging with frame coalescing.
+     */
+    @Benchmark
+    public float predictedPosition()
+    {
+        return engine.getPredictedPosition(time, PREDICTION_MS);
+    }
+
+    /**
+     * A complete swipe: the down, all the move events and the fling or release decision.
+     */
+    @Benchmark
+    public int swipe()
+    {
+        startSwipe();
+
+        for( int i = 0; i < MOVES_PER_SWIPE; i++ )
+        {
+            drag();
+        }
+
+        float velocityX = engine.getVelocityX();
+        int decision = engine.fling(x - WIDTH, 0, velocityX, true, true);
+
+        if( decision == SwipeEngine.DECISION_NONE )
+        {
+            decision = engine.release(true, true);
+        }
+
+        return decision;
+    }
+
+    /**
+     * A move event as the SwitchListener handles it: its samples go to the velocity estimate, and
+     * the scroll the GestureDetector reports for it moves the swipe.
+     */
+    private float drag()
+    {
+        for( int i = 1; i <= SAMPLES_PER_MOVE; i++ )
+        {
+            float sampleX = x - ( MOVE_DISTANCE * i / SAMPLES_PER_MOVE );
+            long sampleTime = time + ( FRAME_INTERVAL_MS * i / SAMPLES_PER_MOVE );
+
+            engine.addSample(sampleX, sampleTime);
+        }
+
+        x -= MOVE_DISTANCE;
+        time += FRAME_INTERVAL_MS;
+
+        engine.scrollBy(MOVE_DISTANCE);
+
+        return engine.getPosition();
+    }
+
+    private void startSwipe()
+    {
+        x = WIDTH;
+        time += FRAME_INTERVAL_MS;
+        moves = 0;
+
+        engine.down(x, 0, time);
+    }
+}